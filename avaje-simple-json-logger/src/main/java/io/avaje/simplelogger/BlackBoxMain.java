@@ -0,0 +1,29 @@
+package io.avaje.simplelogger;
+
+import io.avaje.simplelogger.encoder.BlackBoxDecoder;
+
+/**
+ * Command line entry point that decodes a black box file back into the logged events.
+ * <p>
+ * Usage via the class path or the module path:
+ * <pre>{@code
+ *
+ *   java -cp avaje-simple-json-logger.jar:... io.avaje.simplelogger.BlackBoxMain <file> [<output>]
+ *
+ *   java -p <libs> -m io.avaje.simplelogger/io.avaje.simplelogger.BlackBoxMain <file> [<output>]
+ *
+ * }</pre>
+ */
+public final class BlackBoxMain {
+
+  private BlackBoxMain() {
+  }
+
+  public static void main(String[] args) {
+    final int status = BlackBoxDecoder.run(args, System.out, System.err);
+    if (status != 0) {
+      // the exit code is only set by the command line entry point
+      System.exit(status);
+    }
+  }
+}
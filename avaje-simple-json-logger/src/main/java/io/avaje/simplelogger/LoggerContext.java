@@ -28,4 +28,36 @@ public interface LoggerContext extends ILoggerFactory {
    * @return Map of changed loggers and their new levels.
    */
   Map<String, String> putAll(Map<String, String> nameLevels);
+
+  /**
+   * Return the number of log events dropped per level (trace, debug, info, warn, error).
+   * <p>
+   * Events are only dropped when using {@code logger.async=true} with an overflow
+   * policy that drops events and the async buffer is full.
+   */
+  default Map<String, Long> droppedCounts() {
+    return Map.of();
+  }
+
+  /**
+   * Write any buffered or queued log events, waiting up to {@code logger.shutdownTimeout}.
+   * <p>
+   * Events are buffered or queued when using {@code logger.async}, {@code logger.batch},
+   * {@code logger.file} or {@code logger.stdout.striped}.
+   */
+  default void flush() {
+    // nothing buffered by default
+  }
+
+  /**
+   * Write any buffered or queued log events and close the log writer, waiting up
+   * to {@code logger.shutdownTimeout}.
+   * <p>
+   * This is called by a JVM shutdown hook unless {@code logger.shutdownHook=false}, which
+   * is used by frameworks that manage the lifecycle and call close themselves.
+   * Events logged after close may be discarded.
+   */
+  default void close() {
+    flush();
+  }
 }
@@ -0,0 +1,98 @@
+package io.avaje.simplelogger;
+
+import io.avaje.simplelogger.encoder.SimpleMDCAdapter;
+import org.slf4j.MDC;
+import org.slf4j.spi.MDCAdapter;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Run tasks with an MDC context bound for the duration of the task.
+ * <p>
+ * Similar to a ScopedValue binding, the context is bound to the current thread when
+ * the task starts and the previous context is restored when it completes. Use this
+ * to propagate the MDC to tasks run by an executor, as pooled threads do not inherit
+ * the MDC of the thread that submitted the task.
+ *
+ * <pre>{@code
+ *
+ *   Map<String, String> context = MDCScope.capture();
+ *   executor.submit(() -> MDCScope.run(context, () -> processRequest(request)));
+ *
+ * }</pre>
+ */
+public final class MDCScope {
+
+  private MDCScope() {
+  }
+
+  /**
+   * Return the MDC context of the current thread (empty rather than null).
+   */
+  public static Map<String, String> capture() {
+    final MDCAdapter adapter = MDC.getMDCAdapter();
+    if (adapter instanceof SimpleMDCAdapter) {
+      // immutable so no copy required
+      return ((SimpleMDCAdapter) adapter).snapshot();
+    }
+    final Map<String, String> context = MDC.getCopyOfContextMap();
+    return context == null ? Map.of() : context;
+  }
+
+  /**
+   * Run the task with the given MDC context.
+   */
+  public static void run(Map<String, String> context, Runnable task) {
+    final MDCAdapter adapter = MDC.getMDCAdapter();
+    if (adapter instanceof SimpleMDCAdapter) {
+      final SimpleMDCAdapter simple = (SimpleMDCAdapter) adapter;
+      final Map<String, String> previous = simple.bind(context);
+      try {
+        task.run();
+      } finally {
+        simple.restore(previous);
+      }
+    } else {
+      final Map<String, String> previous = MDC.getCopyOfContextMap();
+      MDC.setContextMap(context);
+      try {
+        task.run();
+      } finally {
+        restore(previous);
+      }
+    }
+  }
+
+  /**
+   * Call the task with the given MDC context returning the result.
+   */
+  public static <T> T call(Map<String, String> context, Callable<T> task) throws Exception {
+    final MDCAdapter adapter = MDC.getMDCAdapter();
+    if (adapter instanceof SimpleMDCAdapter) {
+      final SimpleMDCAdapter simple = (SimpleMDCAdapter) adapter;
+      final Map<String, String> previous = simple.bind(context);
+      try {
+        return task.call();
+      } finally {
+        simple.restore(previous);
+      }
+    } else {
+      final Map<String, String> previous = MDC.getCopyOfContextMap();
+      MDC.setContextMap(context);
+      try {
+        return task.call();
+      } finally {
+        restore(previous);
+      }
+    }
+  }
+
+  private static void restore(Map<String, String> previous) {
+    if (previous == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(previous);
+    }
+  }
+}
@@ -1,8 +1,8 @@
 package io.avaje.simplelogger;
 
+import io.avaje.simplelogger.encoder.SimpleMDCAdapter;
 import org.slf4j.ILoggerFactory;
 import org.slf4j.IMarkerFactory;
-import org.slf4j.helpers.BasicMDCAdapter;
 import org.slf4j.helpers.BasicMarkerFactory;
 import org.slf4j.spi.MDCAdapter;
 import org.slf4j.spi.SLF4JServiceProvider;
@@ -25,7 +25,7 @@ public final class SimpleLoggerProvider implements SLF4JServiceProvider {
 
   public SimpleLoggerProvider() {
     this.markerFactory = new BasicMarkerFactory();
-    this.mdcAdapter = new BasicMDCAdapter();
+    this.mdcAdapter = new SimpleMDCAdapter();
     this.loggerFactory = LoggerContext.get();
   }
 
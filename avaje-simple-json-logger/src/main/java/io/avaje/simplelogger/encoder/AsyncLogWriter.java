@@ -0,0 +1,259 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.Reporter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LogWriter that encodes on the calling thread and hands the encoded event to
+ * a bounded lock-free ring buffer that is drained by a single writer thread.
+ * <p>
+ * The calling thread never performs the write to the underlying sink so a slow
+ * stdout pipe does not stall the application threads. When the ring buffer is
+ * full the {@link OverflowPolicy} determines if the caller blocks or if events
+ * are dropped, with dropped events counted per level.
+ * <p>
+ * On close no further events are accepted (events logged after close are counted
+ * as dropped), the writer thread drains the queued events and then closes the sink
+ * such that the sink is only ever written to and closed by the writer thread. An event
+ * offered concurrently with close is either written by the final drain or counted as
+ * dropped by the producer.
+ */
+final class AsyncLogWriter implements LogWriter {
+
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final LogEncoder encoder;
+  private final LogSink sink;
+  private final RingBuffer ringBuffer;
+  private final OverflowPolicy overflowPolicy;
+  private final int overflowLevel;
+  private final LongAdder[] dropped = new LongAdder[Level.values().length];
+  private final Thread writerThread;
+  /**
+   * The highest ring buffer position a flush has been requested up to.
+   */
+  private final AtomicLong flushRequested = new AtomicLong();
+  /**
+   * The ring buffer position up to which the events are written and flushed.
+   */
+  private volatile long flushCompleted;
+  private volatile boolean parked;
+  private volatile boolean running = true;
+  /**
+   * Set by the writer thread once the events queued before close are written.
+   */
+  private volatile boolean drained;
+  /**
+   * The System.nanoTime() by which close should complete.
+   */
+  private volatile long closeDeadline;
+
+  AsyncLogWriter(LogEncoder encoder, LogSink sink, int capacity) {
+    this(encoder, sink, capacity, OverflowPolicy.BLOCK, Level.WARN);
+  }
+
+  AsyncLogWriter(LogEncoder encoder, LogSink sink, int capacity, OverflowPolicy overflowPolicy, Level overflowLevel) {
+    this.encoder = encoder;
+    this.sink = sink;
+    this.ringBuffer = new RingBuffer(capacity);
+    this.overflowPolicy = overflowPolicy;
+    this.overflowLevel = overflowLevel.toInt();
+    for (int i = 0; i < dropped.length; i++) {
+      dropped[i] = new LongAdder();
+    }
+    this.writerThread = new Thread(this::run, "avaje-logger-async");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return encoder.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    if (overflowPolicy == OverflowPolicy.DROP_NEWEST && ringBuffer.isFull()) {
+      // avoid encoding events that will be dropped
+      dropped[level.ordinal()].increment();
+      return;
+    }
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
+    try {
+      encoder.encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      enqueue(buffer, level);
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private void enqueue(EncodeBuffer buffer, Level level) {
+    final byte[] bytes = buffer.array();
+    final int length = buffer.size();
+    while (running) {
+      if (ringBuffer.offer(bytes, 0, length, level.ordinal())) {
+        if (parked) {
+          LockSupport.unpark(writerThread);
+        }
+        if (!running) {
+          // closed after the offer claimed its slot
+          dropAfterDrain();
+        }
+        return;
+      }
+      if (!overflow(level)) {
+        dropped[level.ordinal()].increment();
+        return;
+      }
+    }
+    // closed, no longer accepting events
+    dropped[level.ordinal()].increment();
+  }
+
+  /**
+   * Drop and count the events left in the ring buffer when the final drain of the
+   * writer thread has completed, otherwise the writer thread drains them.
+   */
+  private void dropAfterDrain() {
+    if (drained) {
+      int level;
+      while ((level = ringBuffer.dropOldest()) >= 0) {
+        dropped[level].increment();
+      }
+    }
+  }
+
+  /**
+   * Handle a full ring buffer returning false if the new event should be dropped.
+   */
+  private boolean overflow(Level level) {
+    switch (overflowPolicy) {
+      case DROP_NEWEST:
+        return false;
+      case DROP_OLDEST:
+        final int droppedLevel = ringBuffer.dropOldest();
+        if (droppedLevel >= 0) {
+          dropped[droppedLevel].increment();
+        }
+        return true;
+      case DROP_BELOW_LEVEL:
+        if (level.toInt() < overflowLevel) {
+          return false;
+        }
+        waitForSpace();
+        return true;
+      default:
+        waitForSpace();
+        return true;
+    }
+  }
+
+  private void waitForSpace() {
+    LockSupport.unpark(writerThread);
+    LockSupport.parkNanos(FULL_PARK_NANOS);
+  }
+
+  @Override
+  public Map<String, Long> droppedCounts() {
+    final Map<String, Long> counts = new LinkedHashMap<>();
+    for (Level level : Level.values()) {
+      counts.put(level.name().toLowerCase(Locale.ROOT), dropped[level.ordinal()].sum());
+    }
+    return counts;
+  }
+
+  private void run() {
+    while (running) {
+      try {
+        final int count = ringBuffer.drainTo(sink);
+        // flush when idle or once the drain has passed the requested position
+        final long consumed = ringBuffer.consumed();
+        final long requested = flushRequested.get();
+        if (consumed > flushCompleted && (count == 0 || consumed >= requested)) {
+          sink.flush();
+          flushCompleted = consumed;
+        }
+        if (count == 0) {
+          idle();
+        }
+      } catch (Throwable e) {
+        Reporter.error("Error writing async log events", e);
+      }
+    }
+    try {
+      // wait for slots claimed before close to be published
+      drainRemaining();
+      drained = true;
+      // slots claimed before drained was set, later ones are dropped by the producer
+      drainRemaining();
+    } catch (Throwable e) {
+      Reporter.error("Error writing async log events", e);
+    } finally {
+      sink.close(Math.max(0, TimeUnit.NANOSECONDS.toMillis(closeDeadline - System.nanoTime())));
+    }
+  }
+
+  private void drainRemaining() {
+    while (ringBuffer.drainTo(sink) > 0 || !ringBuffer.isEmpty()) {
+      Thread.onSpinWait();
+    }
+  }
+
+  private void idle() {
+    parked = true;
+    if (running && ringBuffer.isEmpty() && flushRequested.get() <= flushCompleted) {
+      LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+    }
+    parked = false;
+  }
+
+  /**
+   * Wait up to the timeout for the events queued before this call to be written and flushed.
+   */
+  @Override
+  public void flush(long timeoutMillis) {
+    final long request = ringBuffer.claimed();
+    if (!running || request <= flushCompleted) {
+      return;
+    }
+    flushRequested.accumulateAndGet(request, Math::max);
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    LockSupport.unpark(writerThread);
+    while (flushCompleted < request && running && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(FULL_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Stop accepting events and wait up to the timeout for the writer thread to write
+   * the remaining events and close the sink.
+   */
+  @Override
+  public void close(long timeoutMillis) {
+    if (!running) {
+      return;
+    }
+    closeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    running = false;
+    LockSupport.unpark(writerThread);
+    try {
+      writerThread.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writerThread.isAlive()) {
+      Reporter.warn("Async log writer did not complete writing queued events within " + timeoutMillis + " millis");
+    }
+  }
+}
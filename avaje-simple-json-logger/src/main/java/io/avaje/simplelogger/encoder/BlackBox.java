@@ -0,0 +1,115 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size circular log of the most recent encoded events held in a memory mapped file.
+ * <p>
+ * The bytes are copied into the mapped file on the logging thread such that they are
+ * in the operating system page cache and survive the JVM being killed (OOM kill,
+ * SIGKILL or a native crash). Use {@link BlackBoxDecoder} to read the events back.
+ * <p>
+ * Space is reserved without locking such that logging threads copy their events
+ * concurrently. The header position is then advanced in reservation order such that
+ * it only includes complete events, a thread only waits for the copy of the events
+ * reserved before it.
+ * <p>
+ * The file has a fixed size header followed by the circular data region:
+ * <pre>
+ *   0  int   magic
+ *   4  int   version
+ *   8  int   capacity of the data region
+ *   16 long  total number of bytes written
+ *   64 ...   data region
+ * </pre>
+ * On startup an existing black box file that contains events is renamed with a
+ * {@code .prev} suffix such that the events of a crashed process are not overwritten.
+ */
+final class BlackBox {
+
+  static final int MAGIC = 0x41564242;
+  static final int VERSION = 1;
+  static final int CAPACITY_OFFSET = 8;
+  static final int POSITION_OFFSET = 16;
+  static final int HEADER_SIZE = 64;
+
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final AtomicLong reserved = new AtomicLong();
+  private final AtomicLong committed = new AtomicLong();
+
+  private BlackBox(MappedByteBuffer buffer, int capacity) {
+    this.buffer = buffer;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Create the black box file with the given capacity returning null if it can not be mapped.
+   */
+  static BlackBox create(Path file, int capacity) {
+    try {
+      final Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      if (Files.exists(file) && Files.size(file) > HEADER_SIZE) {
+        Files.move(file, file.resolveSibling(file.getFileName() + ".prev"), StandardCopyOption.REPLACE_EXISTING);
+      }
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        // the mapping remains valid after the channel is closed
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(POSITION_OFFSET, 0);
+        return new BlackBox(buffer, capacity);
+      }
+    } catch (IOException | RuntimeException e) {
+      Reporter.error("Failed to create black box log file " + file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Append the encoded event overwriting the oldest events when full.
+   */
+  void write(byte[] bytes, int offset, int length) {
+    if (length > capacity) {
+      // only the tail of the event fits
+      offset += length - capacity;
+      length = capacity;
+    }
+    final long position = reserved.getAndAdd(length);
+    final ByteBuffer region = buffer.duplicate();
+    final int start = (int) (position % capacity);
+    final int first = Math.min(length, capacity - start);
+    region.position(HEADER_SIZE + start);
+    region.put(bytes, offset, first);
+    if (first < length) {
+      region.position(HEADER_SIZE);
+      region.put(bytes, offset + first, length - first);
+    }
+    // wait for the copy of the events reserved before this one
+    for (int spins = 0; committed.get() != position; spins++) {
+      if (spins < 100) {
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+    }
+    // written after the data such that the position only includes complete events
+    buffer.putLong(POSITION_OFFSET, position + length);
+    committed.set(position + length);
+  }
+}
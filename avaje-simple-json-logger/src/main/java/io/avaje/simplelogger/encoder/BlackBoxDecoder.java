@@ -0,0 +1,83 @@
+package io.avaje.simplelogger.encoder;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decodes a black box file back into the logged events (NDJSON for the json writer).
+ * <p>
+ * Run via {@link io.avaje.simplelogger.BlackBoxMain}.
+ * <p>
+ * The events are written oldest first to the output file or System.out. When the
+ * circular region has wrapped the partially overwritten oldest event is skipped.
+ */
+public final class BlackBoxDecoder {
+
+  private BlackBoxDecoder() {
+  }
+
+  /**
+   * Decode the file given by the arguments {@code <file> [<output>]} returning the exit code.
+   */
+  public static int run(String[] args, PrintStream out, PrintStream err) {
+    if (args.length < 1 || args.length > 2) {
+      err.println("Usage: BlackBoxMain <file> [<output>]");
+      return 2;
+    }
+    final Path file = Path.of(args[0]);
+    try {
+      if (args.length == 2) {
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(Path.of(args[1])))) {
+          decode(file, output);
+        }
+      } else {
+        decode(file, out);
+        out.flush();
+      }
+      return 0;
+    } catch (IOException e) {
+      err.println("Failed to decode " + file + ": " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * Write the events held in the black box file to the output oldest first.
+   */
+  public static void decode(Path file, OutputStream out) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (buffer.limit() < BlackBox.HEADER_SIZE || buffer.getInt(0) != BlackBox.MAGIC) {
+      throw new IOException("Not a black box log file " + file);
+    }
+    if (buffer.getInt(4) != BlackBox.VERSION) {
+      throw new IOException("Unsupported black box version " + buffer.getInt(4) + " in " + file);
+    }
+    final int capacity = buffer.getInt(BlackBox.CAPACITY_OFFSET);
+    final long position = buffer.getLong(BlackBox.POSITION_OFFSET);
+    if (capacity <= 0 || buffer.limit() < BlackBox.HEADER_SIZE + capacity || position < 0) {
+      throw new IOException("Corrupt black box header in " + file);
+    }
+    final byte[] data = buffer.array();
+    if (position <= capacity) {
+      out.write(data, BlackBox.HEADER_SIZE, (int) position);
+      return;
+    }
+    // wrapped, the oldest bytes start at the write position
+    final int start = (int) (position % capacity);
+    final byte[] ordered = new byte[capacity];
+    System.arraycopy(data, BlackBox.HEADER_SIZE + start, ordered, 0, capacity - start);
+    System.arraycopy(data, BlackBox.HEADER_SIZE, ordered, capacity - start, start);
+    int first = 0;
+    while (first < capacity && ordered[first] != '\n') {
+      first++;
+    }
+    if (first < capacity) {
+      out.write(ordered, first + 1, capacity - first - 1);
+    }
+  }
+}
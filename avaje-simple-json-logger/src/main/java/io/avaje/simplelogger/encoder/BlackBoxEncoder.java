@@ -0,0 +1,35 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.util.List;
+
+/**
+ * LogEncoder that also copies each encoded event into the {@link BlackBox}.
+ * <p>
+ * The copy is made on the logging thread as the event is encoded, such that
+ * events are captured even when they are still queued by an async writer.
+ */
+final class BlackBoxEncoder implements LogEncoder {
+
+  private final LogEncoder delegate;
+  private final BlackBox blackBox;
+
+  BlackBoxEncoder(LogEncoder delegate, BlackBox blackBox) {
+    this.delegate = delegate;
+    this.blackBox = blackBox;
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return delegate.loggerName(name);
+  }
+
+  @Override
+  public void encode(EncodeBuffer out, LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final int start = out.size();
+    delegate.encode(out, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+    blackBox.write(out.array(), start, out.size() - start);
+  }
+}
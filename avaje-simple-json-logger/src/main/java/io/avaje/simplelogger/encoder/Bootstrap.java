@@ -1,11 +1,14 @@
 package io.avaje.simplelogger.encoder;
 
 import io.avaje.simplelogger.LoggerContext;
+import org.slf4j.event.Level;
 import org.slf4j.helpers.Reporter;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Bootstrap the simple logger.
@@ -25,7 +28,38 @@ public final class Bootstrap {
     Abbreviator abbreviator = Abbreviator.create(nameLength);
 
     final Map<String, String> nameLevels = initialNameLevels(properties);
-    return new SimpleLoggerFactory(logWriter, abbreviator, defaultLevel, nameLevels);
+    final long shutdownTimeout = intProperty(properties, "logger.shutdownTimeout", 5_000);
+    final var context = new SimpleLoggerFactory(logWriter, abbreviator, defaultLevel, nameLevels, shutdownTimeout, flightRecorder(properties), headSampler(properties));
+    if (Boolean.parseBoolean(property(properties, "logger.shutdownHook", "true"))) {
+      // drain and flush any queued or buffered events on shutdown
+      Runtime.getRuntime().addShutdownHook(new Thread(context::close, "avaje-logger-shutdown"));
+    }
+    return context;
+  }
+
+  /**
+   * Return the flight recorder when logger.flightRecorder=true, otherwise null.
+   */
+  private static FlightRecorder flightRecorder(Properties properties) {
+    if (!Boolean.parseBoolean(property(properties, "logger.flightRecorder"))) {
+      return null;
+    }
+    final Level level = level(properties, "logger.flightRecorder.level", "debug");
+    final int size = intProperty(properties, "logger.flightRecorder.size", 100);
+    final int maxTraces = intProperty(properties, "logger.flightRecorder.maxTraces", 1000);
+    final int maxAge = intProperty(properties, "logger.flightRecorder.maxAge", 30_000);
+    return new FlightRecorder(TraceContextFactory.create(), level, size, maxTraces, maxAge);
+  }
+
+  /**
+   * Return the head sampler when logger.headSampling=true, otherwise null.
+   */
+  private static HeadSampler headSampler(Properties properties) {
+    if (!Boolean.parseBoolean(property(properties, "logger.headSampling"))) {
+      return null;
+    }
+    final Level level = level(properties, "logger.headSampling.level", "info");
+    return new HeadSampler(TraceContextFactory.create(), level);
   }
 
   private static String logFormat(Properties properties) {
@@ -45,31 +79,234 @@ public final class Bootstrap {
     return nameLevels;
   }
 
-  private static LogWriter createWriter(Properties properties, String writerType) {
+  static LogWriter createWriter(Properties properties, String writerType) {
     final PrintStream target = System.out;
     final TimeZone timeZone = TimeZoneUtils.parseTimeZone(property(properties, "logger.timezone"));
     final String timestampPattern = property(properties, "logger.timestampPattern");
+    final boolean async = Boolean.parseBoolean(property(properties, "logger.async"));
+    final LogSink sink = sink(properties, timeZone, target);
     if ("plain".equalsIgnoreCase(writerType)) {
       final DateTimeFormatter formatter = TimeZoneUtils.plainFormatter(timestampPattern, timeZone.toZoneId());
       final boolean showThreadName = propertyShowThreadName(properties);
-      return new PlainLogWriter(target, formatter, showThreadName, TraceContextFactory.create());
+      final LogEncoder plainEncoder = blackBox(properties, new PlainEncoder(formatter, showThreadName, TraceContextFactory.create()));
+      final LogWriter writer = writer(properties, plainEncoder, async, sink, target);
+      return tailSampling(properties, writer != null ? writer : new PlainLogWriter(target, plainEncoder));
     }
-    var jsonEncoder = new JsonEncoderBuilder()
+    final LogEncoder jsonEncoder = blackBox(properties, new JsonEncoderBuilder()
       .component(property(properties, "logger.component"))
       .environment(property(properties,"logger.environment"))
       .naming(property(properties,"logger.naming"))
       .propertyNames(property(properties,"logger.propertyNames"))
       .customFields(property(properties, "logger.customFields"))
+      .stackTrace(property(properties, "logger.stacktrace"))
+      .stackTraceCacheSize(intProperty(properties, "logger.stacktrace.cacheSize", 256))
       .timestampPattern(timestampPattern)
       .timeZone(timeZone)
-      .build();
-    return new JsonLogWriter(jsonEncoder, target);
+      .build());
+    final LogWriter writer = writer(properties, jsonEncoder, async, sink, target);
+    return tailSampling(properties, writer != null ? writer : new JsonLogWriter(jsonEncoder, target));
+  }
+
+  /**
+   * Return the tail sampling writer when logger.tailSampling=true, otherwise the given writer.
+   */
+  private static LogWriter tailSampling(Properties properties, LogWriter writer) {
+    if (!Boolean.parseBoolean(property(properties, "logger.tailSampling"))) {
+      return writer;
+    }
+    return new TailSamplingLogWriter(writer, TraceContextFactory.create(),
+      doubleProperty(properties, "logger.tailSampling.rate", 0.1),
+      intProperty(properties, "logger.tailSampling.window", 30_000),
+      intProperty(properties, "logger.tailSampling.size", 100),
+      intProperty(properties, "logger.tailSampling.maxTraces", 1000));
+  }
+
+  /**
+   * Return the virtual thread, async, group commit, level routing, file or striped stdout writer, otherwise null to write directly to the target.
+   */
+  private static LogWriter writer(Properties properties, LogEncoder encoder, boolean async, LogSink sink, PrintStream target) {
+    final boolean batch = Boolean.parseBoolean(property(properties, "logger.batch"));
+    final int maxBatchBytes = (int) Math.min(Integer.MAX_VALUE, sizeProperty(properties, "logger.batch.maxBytes", "64KB"));
+    if (Boolean.parseBoolean(property(properties, "logger.virtualThreads"))) {
+      warnIgnored(properties, "logger.virtualThreads=true", "logger.async", "logger.batch", "logger.buffered", "logger.stdout.striped");
+      // never hold a monitor or perform IO on the (virtual) logging thread, hand off to the
+      // platform writer thread which writes to stdout directly rather than via PrintStream
+      final var stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), Math.max(8192, maxBatchBytes));
+      return asyncWriter(properties, encoder, sink != null ? sink : new StreamSink(stdout));
+    }
+    if (async) {
+      warnIgnored(properties, "logger.async=true", "logger.buffered", "logger.stdout.striped");
+      // the writer thread drains all available events, buffer them into fewer writes
+      return asyncWriter(properties, encoder, sink != null ? sink : new StreamSink(batch ? new BufferedOutputStream(target, maxBatchBytes) : target));
+    }
+    if (batch && sink instanceof FanOutSink) {
+      // batches mix levels so are not used with per destination levels
+      Reporter.warn("logger.batch=true is ignored as logger.stdout.enabled=true writes to destinations by level");
+    } else if (batch) {
+      warnIgnored(properties, "logger.batch=true", "logger.buffered", "logger.stdout.striped");
+      final long maxDelayMillis = intProperty(properties, "logger.batch.maxDelay", 0);
+      return new GroupCommitLogWriter(encoder, sink != null ? sink : new StreamSink(target), maxBatchBytes, TimeUnit.MILLISECONDS.toNanos(maxDelayMillis));
+    }
+    if (Boolean.parseBoolean(property(properties, "logger.buffered"))) {
+      warnIgnored(properties, "logger.buffered=true", "logger.stdout.striped");
+      final int bufferSize = (int) Math.min(Integer.MAX_VALUE, sizeProperty(properties, "logger.buffered.size", "64KB"));
+      final LogSink buffered = sink != null ? sink : new StreamSink(new BufferedOutputStream(target, bufferSize));
+      final LogSink urgent = "stderr".equalsIgnoreCase(property(properties, "logger.buffered.urgentTarget", "").trim()) ? new StreamSink(System.err) : buffered;
+      final Level flushLevel = level(properties, "logger.buffered.flushLevel", "warn");
+      return new LevelRoutingLogWriter(encoder, buffered, urgent, flushLevel, intProperty(properties, "logger.buffered.flushInterval", 1000), "avaje-logger-buffered-flush");
+    }
+    if (sink != null) {
+      warnIgnored(properties, "logger.file", "logger.stdout.striped");
+      final Level flushLevel = level(properties, "logger.file.flushLevel", "warn");
+      return new LevelRoutingLogWriter(encoder, sink, sink, flushLevel, intProperty(properties, "logger.file.flushInterval", 1000), "avaje-logger-file-flush");
+    }
+    if (Boolean.parseBoolean(property(properties, "logger.stdout.striped"))) {
+      final int stripeSize = intProperty(properties, "logger.stdout.stripeSize", 8192);
+      return StripedLogWriter.stdout(encoder, stripeSize, intProperty(properties, "logger.stdout.flushInterval", 10));
+    }
+    return null;
+  }
+
+  /**
+   * Report the enabled settings that are ignored as the given setting takes precedence.
+   */
+  private static void warnIgnored(Properties properties, String precedence, String... keys) {
+    for (String key : keys) {
+      if (Boolean.parseBoolean(property(properties, key))) {
+        Reporter.warn(key + "=true is ignored as " + precedence + " takes precedence");
+      }
+    }
+  }
+
+  private static LogWriter asyncWriter(Properties properties, LogEncoder encoder, LogSink sink) {
+    final int bufferSize = intProperty(properties, "logger.async.bufferSize", 8192);
+    final var overflowPolicy = OverflowPolicy.of(property(properties, "logger.async.overflow"));
+    final var overflowLevel = level(properties, "logger.async.overflowLevel", "warn");
+    return new AsyncLogWriter(encoder, sink, bufferSize, overflowPolicy, overflowLevel);
+  }
+
+  /**
+   * Return the encoder that also copies events to the black box when logger.blackbox.file is set.
+   */
+  private static LogEncoder blackBox(Properties properties, LogEncoder encoder) {
+    final String file = property(properties, "logger.blackbox.file");
+    if (file == null || file.isBlank()) {
+      return encoder;
+    }
+    final long size = sizeProperty(properties, "logger.blackbox.size", "4MB");
+    final BlackBox blackBox = BlackBox.create(Path.of(file.trim()), (int) Math.min(size, Integer.MAX_VALUE - BlackBox.HEADER_SIZE));
+    return blackBox == null ? encoder : new BlackBoxEncoder(encoder, blackBox);
+  }
+
+  /**
+   * Return the file sink, or when logger.stdout.enabled=true the fan out to both stdout
+   * and the file, otherwise null to write to System.out.
+   */
+  private static LogSink sink(Properties properties, TimeZone timeZone, PrintStream target) {
+    final LogSink file = fileSink(properties, timeZone);
+    if (file == null || !Boolean.parseBoolean(property(properties, "logger.stdout.enabled"))) {
+      return file;
+    }
+    final int bufferSize = intProperty(properties, "logger.stdout.bufferSize", 8192);
+    final LogSink stdout = new StreamSink(new BufferedOutputStream(target, bufferSize));
+    return new FanOutSink(List.of(
+      new FanOutSink.Destination(stdout, level(properties, "logger.stdout.level", "trace")),
+      new FanOutSink.Destination(file, level(properties, "logger.file.level", "trace"))));
+  }
+
+  /**
+   * Return the level of the property, or the default reporting an unknown level.
+   */
+  static Level level(Properties properties, String key, String defaultValue) {
+    final String value = property(properties, key, defaultValue).trim();
+    for (Level level : Level.values()) {
+      if (level.name().equalsIgnoreCase(value)) {
+        return level;
+      }
+    }
+    if (!value.isEmpty()) {
+      Reporter.warn("Unknown level " + value + " for " + key + ", using " + defaultValue);
+    }
+    return Level.valueOf(defaultValue.toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Return the file sink when logger.file is set, otherwise null to write to System.out.
+   */
+  private static LogSink fileSink(Properties properties, TimeZone timeZone) {
+    final String file = property(properties, "logger.file");
+    if (file == null || file.isBlank()) {
+      return null;
+    }
+    final long maxSize = sizeProperty(properties, "logger.file.maxSize", "0");
+    final var policy = new RollingPolicy(
+      maxSize,
+      RollingPolicy.Period.of(property(properties, "logger.file.rollPeriod")),
+      timeZone.toZoneId(),
+      intProperty(properties, "logger.file.maxHistory", 7),
+      sizeProperty(properties, "logger.file.totalSizeCap", "0"));
+    final boolean compress = Boolean.parseBoolean(property(properties, "logger.file.compress"));
+    if (Boolean.parseBoolean(property(properties, "logger.file.mapped"))) {
+      final long segmentSize = maxSize > 0 ? Math.min(maxSize, Integer.MAX_VALUE) : 64 * 1024 * 1024;
+      return new MappedFileSink(Path.of(file.trim()), policy, (int) segmentSize, compress);
+    }
+    final int bufferSize = intProperty(properties, "logger.file.bufferSize", 8192);
+    return new FileSink(Path.of(file.trim()), policy, bufferSize, compress);
   }
 
   private static String property(Properties properties, String key) {
     return Eval.eval(properties.getProperty(key));
   }
 
+  private static String property(Properties properties, String key, String defaultValue) {
+    return Eval.eval(properties.getProperty(key, defaultValue));
+  }
+
+  /**
+   * Return the int property reporting an invalid value and using the default.
+   */
+  static int intProperty(Properties properties, String key, int defaultValue) {
+    final String value = property(properties, key);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      Reporter.warn("Invalid number " + value.trim() + " for " + key + ", using " + defaultValue);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Return the double property reporting an invalid value and using the default.
+   */
+  static double doubleProperty(Properties properties, String key, double defaultValue) {
+    final String value = property(properties, key);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      Reporter.warn("Invalid number " + value.trim() + " for " + key + ", using " + defaultValue);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Return the size property like 100MB reporting an invalid value and using the default.
+   */
+  static long sizeProperty(Properties properties, String key, String defaultValue) {
+    final String value = property(properties, key, defaultValue);
+    try {
+      return RollingPolicy.parseSize(value);
+    } catch (IllegalArgumentException e) {
+      Reporter.warn("Invalid size " + value.trim() + " for " + key + ", using " + defaultValue);
+      return RollingPolicy.parseSize(defaultValue);
+    }
+  }
+
   private static boolean propertyShowThreadName(Properties properties) {
     return Boolean.parseBoolean(Eval.eval(properties.getProperty("logger.showThreadName", "true")));
   }
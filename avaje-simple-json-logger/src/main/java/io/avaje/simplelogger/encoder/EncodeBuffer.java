@@ -0,0 +1,259 @@
+package io.avaje.simplelogger.encoder;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable growable byte buffer that log events are encoded into.
+ * <p>
+ * A buffer is recycled per thread via {@link #acquire()} and {@link #release()} such
+ * that encoding an event does not allocate a new byte array. Writers are handed the
+ * slice {@code array()[0..size()]} to write.
+ */
+final class EncodeBuffer extends OutputStream {
+
+  private static final int INITIAL_SIZE = 512;
+
+  /**
+   * Buffers that grew larger than this (e.g. large stack traces) are not retained.
+   */
+  private static final int MAX_RETAINED = 32 * 1024;
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final ThreadLocal<EncodeBuffer> LOCAL = ThreadLocal.withInitial(EncodeBuffer::new);
+
+  private byte[] buf;
+  private int count;
+  private boolean inUse;
+
+  EncodeBuffer() {
+    this(INITIAL_SIZE);
+  }
+
+  EncodeBuffer(int initialSize) {
+    this.buf = new byte[initialSize];
+  }
+
+  /**
+   * Return the empty buffer for this thread.
+   * <p>
+   * If the thread buffer is already in use (logging while encoding) then a new
+   * buffer is returned. Callers must {@link #release()} the buffer after use.
+   */
+  static EncodeBuffer acquire() {
+    final EncodeBuffer buffer = LOCAL.get();
+    if (buffer.inUse) {
+      return new EncodeBuffer();
+    }
+    buffer.inUse = true;
+    buffer.count = 0;
+    return buffer;
+  }
+
+  /**
+   * Release the buffer such that it can be reused by the thread.
+   */
+  void release() {
+    inUse = false;
+    count = 0;
+    if (buf.length > MAX_RETAINED) {
+      buf = new byte[INITIAL_SIZE];
+    }
+  }
+
+  /**
+   * Return the underlying array, valid bytes are from 0 to {@link #size()}.
+   */
+  byte[] array() {
+    return buf;
+  }
+
+  /**
+   * Return the number of bytes written.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Return a copy of the written bytes.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buf, count);
+  }
+
+  /**
+   * Reset the buffer to empty retaining the underlying array.
+   */
+  void reset() {
+    count = 0;
+  }
+
+  /**
+   * Discard the bytes written after the given size.
+   */
+  void truncate(int size) {
+    count = Math.min(count, size);
+  }
+
+  private void ensureCapacity(int extra) {
+    final int required = count + extra;
+    if (required > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length << 1, required));
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    ensureCapacity(1);
+    buf[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, buf, count, length);
+    count += length;
+  }
+
+  /**
+   * Append all the bytes.
+   */
+  void append(byte[] bytes) {
+    write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Append the characters encoded as UTF-8.
+   */
+  void append(CharSequence value) {
+    final int length = value.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        buf[count++] = (byte) c;
+      } else {
+        i = appendMultiByte(value, i, c, length);
+      }
+    }
+  }
+
+  /**
+   * Append the value as a quoted JSON string.
+   */
+  void appendJsonString(CharSequence value) {
+    write('"');
+    appendJsonEscaped(value, 0, value.length());
+    write('"');
+  }
+
+  /**
+   * Append the characters JSON escaped and encoded as UTF-8 (without quotes).
+   */
+  void appendJsonEscaped(CharSequence value) {
+    appendJsonEscaped(value, 0, value.length());
+  }
+
+  /**
+   * Append the characters from start (inclusive) to end (exclusive) JSON escaped and encoded as UTF-8.
+   */
+  void appendJsonEscaped(CharSequence value, int start, int end) {
+    ensureCapacity(end - start);
+    for (int i = start; i < end; i++) {
+      final char c = value.charAt(i);
+      if (c >= 0x80) {
+        i = appendMultiByte(value, i, c, end);
+      } else if (c < 0x20 || c == '"' || c == '\\') {
+        appendEscape(c, end - i);
+      } else {
+        buf[count++] = (byte) c;
+      }
+    }
+  }
+
+  private void appendEscape(char c, int remaining) {
+    ensureCapacity(6 + remaining);
+    buf[count++] = '\\';
+    switch (c) {
+      case '"':
+      case '\\':
+        buf[count++] = (byte) c;
+        break;
+      case '\n':
+        buf[count++] = 'n';
+        break;
+      case '\r':
+        buf[count++] = 'r';
+        break;
+      case '\t':
+        buf[count++] = 't';
+        break;
+      case '\b':
+        buf[count++] = 'b';
+        break;
+      case '\f':
+        buf[count++] = 'f';
+        break;
+      default:
+        buf[count++] = 'u';
+        buf[count++] = '0';
+        buf[count++] = '0';
+        buf[count++] = HEX[c >> 4];
+        buf[count++] = HEX[c & 0xF];
+    }
+  }
+
+  /**
+   * Append the decimal digits of the value.
+   */
+  void appendLong(long value) {
+    if (value == Long.MIN_VALUE) {
+      append("-9223372036854775808");
+      return;
+    }
+    ensureCapacity(20);
+    if (value < 0) {
+      buf[count++] = '-';
+      value = -value;
+    }
+    final int start = count;
+    do {
+      buf[count++] = (byte) ('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+    for (int i = start, j = count - 1; i < j; i++, j--) {
+      final byte tmp = buf[i];
+      buf[i] = buf[j];
+      buf[j] = tmp;
+    }
+  }
+
+  /**
+   * Append a non-ASCII character returning the index of the last character consumed.
+   */
+  private int appendMultiByte(CharSequence value, int i, char c, int end) {
+    ensureCapacity(4 + end - i);
+    if (c < 0x800) {
+      buf[count++] = (byte) (0xC0 | (c >> 6));
+      buf[count++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+      final int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+      buf[count++] = (byte) (0xF0 | (codePoint >> 18));
+      buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+      buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+      buf[count++] = (byte) (0x80 | (codePoint & 0x3F));
+      return i + 1;
+    } else if (Character.isSurrogate(c)) {
+      // unpaired surrogate
+      buf[count++] = '?';
+    } else {
+      buf[count++] = (byte) (0xE0 | (c >> 12));
+      buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buf[count++] = (byte) (0x80 | (c & 0x3F));
+    }
+    return i;
+  }
+}
@@ -0,0 +1,78 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.Level;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogSink that writes the same encoded bytes to multiple destinations.
+ * <p>
+ * The event is encoded once and each destination receives the event when its
+ * level is at or above the destination threshold. Each destination sink has its
+ * own buffering, for example the file buffer size.
+ */
+final class FanOutSink implements LogSink {
+
+  /**
+   * A destination sink with its level threshold.
+   */
+  static final class Destination {
+
+    private final LogSink sink;
+    private final int level;
+
+    Destination(LogSink sink, Level level) {
+      this.sink = sink;
+      this.level = level.toInt();
+    }
+  }
+
+  private final Destination[] destinations;
+
+  FanOutSink(List<Destination> destinations) {
+    this.destinations = destinations.toArray(new Destination[0]);
+  }
+
+  /**
+   * Write to all destinations (the level is not known).
+   */
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    for (Destination destination : destinations) {
+      destination.sink.write(bytes, offset, length);
+    }
+  }
+
+  @Override
+  public void write(Level level, byte[] bytes, int offset, int length) {
+    final int levelInt = level.toInt();
+    for (Destination destination : destinations) {
+      if (levelInt >= destination.level) {
+        destination.sink.write(level, bytes, offset, length);
+      }
+    }
+  }
+
+  @Override
+  public void flush() {
+    for (Destination destination : destinations) {
+      destination.sink.flush();
+    }
+  }
+
+  @Override
+  public void close() {
+    for (Destination destination : destinations) {
+      destination.sink.close();
+    }
+  }
+
+  @Override
+  public void close(long timeoutMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    for (Destination destination : destinations) {
+      destination.sink.close(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * LogSink that writes the encoded bytes directly to a FileChannel rolling the file
+ * by size and time as determined by the {@link RollingPolicy}.
+ * <p>
+ * Bytes are collected in a buffer and written to the channel when the buffer is
+ * full or on {@link #flush()}.
+ * <p>
+ * With compression, rolled files are handed to a {@link RolledFileCompressor} that
+ * gzips them (and applies retention) in the background rather than on the logging thread.
+ */
+final class FileSink implements LogSink {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Path file;
+  private final RollingPolicy policy;
+  private final LongSupplier clock;
+  private final ByteBuffer buffer;
+  private final RolledFileCompressor compressor;
+  private FileChannel channel;
+  private long size;
+  private long periodStart;
+  private long nextRollTime;
+
+  FileSink(Path file, RollingPolicy policy, int bufferSize) {
+    this(file, policy, bufferSize, System::currentTimeMillis);
+  }
+
+  FileSink(Path file, RollingPolicy policy, int bufferSize, boolean compress) {
+    this(file, policy, bufferSize, compress, System::currentTimeMillis);
+  }
+
+  FileSink(Path file, RollingPolicy policy, int bufferSize, LongSupplier clock) {
+    this(file, policy, bufferSize, false, clock);
+  }
+
+  FileSink(Path file, RollingPolicy policy, int bufferSize, boolean compress, LongSupplier clock) {
+    this.file = file;
+    this.policy = policy;
+    this.clock = clock;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    open(clock.getAsLong());
+    this.compressor = compress ? new RolledFileCompressor(file, policy) : null;
+    if (compressor != null) {
+      compressor.submitExisting();
+    }
+  }
+
+  private void open(long now) {
+    try {
+      final Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      size = channel.size();
+    } catch (IOException e) {
+      Reporter.error("Failed to open log file " + file, e);
+      channel = null;
+      size = 0;
+    }
+    final long since = size > 0 ? lastModified(file, now) : now;
+    periodStart = policy.periodStart(since);
+    nextRollTime = policy.nextRollTime(since);
+  }
+
+  /**
+   * Return the last modified time of an existing file (capped at now).
+   * <p>
+   * The period of a file left from an earlier run starts from this time such that a file
+   * from an earlier day or hour is rolled with the stamp of that period.
+   */
+  static long lastModified(Path file, long now) {
+    try {
+      return Math.min(now, Files.getLastModifiedTime(file).toMillis());
+    } catch (IOException e) {
+      return now;
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    lock.lock();
+    try {
+      final long now = clock.getAsLong();
+      if (now >= nextRollTime || policy.sizeExceeded(size, length)) {
+        roll(now);
+      }
+      if (length > buffer.remaining()) {
+        drain();
+        if (length > buffer.capacity()) {
+          writeFully(ByteBuffer.wrap(bytes, offset, length));
+          size += length;
+          return;
+        }
+      }
+      buffer.put(bytes, offset, length);
+      size += length;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void roll(long now) {
+    drain();
+    close(channel);
+    Path rolled = null;
+    if (size > 0) {
+      rolled = policy.rolledPath(file, periodStart);
+      try {
+        move(file, rolled);
+      } catch (IOException e) {
+        Reporter.error("Failed to roll log file " + file + " to " + rolled, e);
+        rolled = null;
+      }
+    }
+    open(now);
+    if (compressor != null) {
+      if (rolled != null) {
+        compressor.submit(rolled);
+      }
+      return;
+    }
+    try {
+      policy.applyRetention(file);
+    } catch (IOException e) {
+      Reporter.error("Failed to remove old log files for " + file, e);
+    }
+  }
+
+  static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target);
+    }
+  }
+
+  /**
+   * Write the buffered bytes to the channel.
+   */
+  private void drain() {
+    if (buffer.position() > 0) {
+      buffer.flip();
+      writeFully(buffer);
+      buffer.clear();
+    }
+  }
+
+  private void writeFully(ByteBuffer bytes) {
+    if (channel == null) {
+      // failed to open the file, discard
+      bytes.position(bytes.limit());
+      return;
+    }
+    try {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    } catch (IOException e) {
+      Reporter.error("Failed to write to log file " + file, e);
+      bytes.position(bytes.limit());
+    }
+  }
+
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      drain();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    close(5_000);
+  }
+
+  /**
+   * Close the file waiting up to the timeout for queued files to be compressed.
+   */
+  @Override
+  public void close(long timeoutMillis) {
+    lock.lock();
+    try {
+      drain();
+      close(channel);
+      channel = null;
+    } finally {
+      lock.unlock();
+    }
+    if (compressor != null) {
+      compressor.close(timeoutMillis);
+    }
+  }
+
+  private void close(FileChannel fileChannel) {
+    if (fileChannel != null) {
+      try {
+        fileChannel.close();
+      } catch (IOException e) {
+        Reporter.error("Failed to close log file " + file, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.MDC;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the events below the logger level without formatting them, emitting
+ * them only when an error is logged in the same scope.
+ * <p>
+ * The scope is the current trace (when there is a trace id) or otherwise the current
+ * thread. Each scope holds a bounded ring of the most recent events with their raw
+ * arguments, the MDC snapshot (by reference) and the time they were logged. The
+ * arguments are only formatted if the events are emitted, so they should not be
+ * mutated after being logged.
+ * <p>
+ * Events older than the max age are not emitted such that on pooled threads the events
+ * of earlier (unrelated) requests are not emitted with an error. They are evicted from
+ * the scope when the next event is recorded, releasing their arguments. Trace scopes
+ * are dropped when older than the max age or over the max traces.
+ */
+final class FlightRecorder {
+
+  static final String RECORDED_AT = "recordedAt";
+
+  private final TraceContext traceContext;
+  private final int level;
+  private final int capacity;
+  private final int maxTraces;
+  private final long maxAgeMillis;
+  private final ThreadLocal<Ring> threadRings;
+  private final ConcurrentHashMap<String, Ring> traceRings = new ConcurrentHashMap<>();
+  private final Queue<Ring> traceOrder = new ConcurrentLinkedQueue<>();
+
+  FlightRecorder(TraceContext traceContext, Level level, int capacity, int maxTraces) {
+    this(traceContext, level, capacity, maxTraces, 30_000);
+  }
+
+  /**
+   * Create the recorder.
+   *
+   * @param traceContext The trace context used to determine the scope
+   * @param level        The lowest level of events recorded
+   * @param capacity     The number of events recorded per scope
+   * @param maxTraces    The number of traces recorded, the oldest are evicted
+   * @param maxAgeMillis The age after which recorded events are not emitted
+   */
+  FlightRecorder(TraceContext traceContext, Level level, int capacity, int maxTraces, long maxAgeMillis) {
+    this.traceContext = traceContext;
+    this.level = level.toInt();
+    this.capacity = capacity;
+    this.maxTraces = maxTraces;
+    this.maxAgeMillis = maxAgeMillis;
+    this.threadRings = ThreadLocal.withInitial(() -> new Ring(capacity));
+  }
+
+  /**
+   * Return the lowest level of events recorded.
+   */
+  int level() {
+    return level;
+  }
+
+  /**
+   * Record the event in the current scope if it is at or above the record level.
+   */
+  void record(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    if (level.toInt() < this.level) {
+      return;
+    }
+    final Event event = Event.of(loggerName, level, messagePattern, arguments, t, keyValuePairs);
+    final long since = event.timestamp - maxAgeMillis;
+    final String traceId = traceContext.traceId();
+    if (traceId == null) {
+      threadRings.get().add(event, since);
+    } else {
+      traceRing(traceId).add(event, since);
+    }
+  }
+
+  private Ring traceRing(String traceId) {
+    final Ring ring = traceRings.get(traceId);
+    if (ring != null) {
+      return ring;
+    }
+    final long now = System.currentTimeMillis();
+    final Ring newRing = new Ring(capacity, traceId, now);
+    final Ring existing = traceRings.putIfAbsent(traceId, newRing);
+    if (existing != null) {
+      return existing;
+    }
+    traceOrder.add(newRing);
+    evict(now - maxAgeMillis);
+    return newRing;
+  }
+
+  /**
+   * Drop the trace rings created before the given time and the oldest over the max traces.
+   */
+  private void evict(long createdBefore) {
+    Ring eldest;
+    while ((eldest = traceOrder.peek()) != null && (eldest.created < createdBefore || traceRings.size() > maxTraces)) {
+      if (traceOrder.remove(eldest)) {
+        // only remove the ring if it is still the ring of the trace
+        traceRings.remove(eldest.traceId, eldest);
+      }
+    }
+  }
+
+  /**
+   * Emit the events recorded in the current scope, oldest first, and clear them.
+   */
+  void dump(LogWriter writer) {
+    final String traceId = traceContext.traceId();
+    final Ring ring = traceId == null ? threadRings.get() : traceRings.remove(traceId);
+    if (ring == null) {
+      return;
+    }
+    final long since = System.currentTimeMillis() - maxAgeMillis;
+    for (Event event : ring.drain()) {
+      if (event.timestamp >= since) {
+        event.writeTo(writer);
+      }
+    }
+  }
+
+  /**
+   * A recorded event with its raw arguments.
+   */
+  static final class Event {
+
+    private final long timestamp;
+    private final LoggerName loggerName;
+    private final Level level;
+    private final String messagePattern;
+    private final Object[] arguments;
+    private final Throwable throwable;
+    private final List<KeyValuePair> keyValuePairs;
+    private final Map<String, String> mdc;
+
+    Event(long timestamp, LoggerName loggerName, Level level, String messagePattern, Object[] arguments,
+          Throwable throwable, List<KeyValuePair> keyValuePairs, Map<String, String> mdc) {
+      this.timestamp = timestamp;
+      this.loggerName = loggerName;
+      this.level = level;
+      this.messagePattern = messagePattern;
+      this.arguments = arguments;
+      this.throwable = throwable;
+      this.keyValuePairs = keyValuePairs;
+      this.mdc = mdc;
+    }
+
+    /**
+     * Return the event logged now with the current MDC.
+     */
+    static Event of(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+      return new Event(System.currentTimeMillis(), loggerName, level, messagePattern, arguments, t, keyValuePairs, SimpleMDCAdapter.contextMap());
+    }
+
+    Level level() {
+      return level;
+    }
+
+    void writeTo(LogWriter writer) {
+      final List<KeyValuePair> pairs = new ArrayList<>(keyValuePairs == null ? 1 : keyValuePairs.size() + 1);
+      if (keyValuePairs != null) {
+        pairs.addAll(keyValuePairs);
+      }
+      pairs.add(new KeyValuePair(RECORDED_AT, Instant.ofEpochMilli(timestamp).toString()));
+      if (!(MDC.getMDCAdapter() instanceof SimpleMDCAdapter)) {
+        writer.log(loggerName, level, messagePattern, arguments, throwable, pairs);
+        return;
+      }
+      // log with the MDC of the recorded event
+      final SimpleMDCAdapter adapter = (SimpleMDCAdapter) MDC.getMDCAdapter();
+      final Map<String, String> previous = adapter.bind(mdc);
+      try {
+        writer.log(loggerName, level, messagePattern, arguments, throwable, pairs);
+      } finally {
+        adapter.restore(previous);
+      }
+    }
+  }
+
+  /**
+   * Bounded ring of recorded events overwriting the oldest.
+   */
+  static final class Ring {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Event[] events;
+    private final String traceId;
+    private final long created;
+    private int next;
+    private int size;
+
+    Ring(int capacity) {
+      this(capacity, null, 0);
+    }
+
+    Ring(int capacity, String traceId, long created) {
+      this.events = new Event[capacity];
+      this.traceId = traceId;
+      this.created = created;
+    }
+
+    void add(Event event) {
+      add(event, Long.MIN_VALUE);
+    }
+
+    /**
+     * Add the event evicting the events recorded before the given time.
+     */
+    void add(Event event, long since) {
+      lock.lock();
+      try {
+        int oldest = (next - size + events.length) % events.length;
+        while (size > 0 && events[oldest].timestamp < since) {
+          events[oldest] = null;
+          oldest = (oldest + 1) % events.length;
+          size--;
+        }
+        events[next] = event;
+        next = (next + 1) % events.length;
+        if (size < events.length) {
+          size++;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    List<Event> drain() {
+      lock.lock();
+      try {
+        final List<Event> drained = new ArrayList<>(size);
+        final int start = (next - size + events.length) % events.length;
+        for (int i = 0; i < size; i++) {
+          final int index = (start + i) % events.length;
+          drained.add(events[index]);
+          events[index] = null;
+        }
+        size = 0;
+        next = 0;
+        return drained;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
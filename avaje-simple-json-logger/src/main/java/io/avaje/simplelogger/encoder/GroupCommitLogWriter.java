@@ -0,0 +1,169 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LogWriter that coalesces the events of concurrent threads into a single write to the sink.
+ * <p>
+ * Each event is encoded on the calling thread and appended to the pending batch. The
+ * thread that appends the first event of a batch owns the batch, it waits for the write
+ * of the previous batch to complete and then writes its batch. Other threads return as
+ * soon as their event is in the pending batch, such that under contention there is one
+ * write per batch rather than one write per event, and a thread writes at most one batch.
+ * <p>
+ * With a max delay the owner waits up to that time for the batch to reach the max batch
+ * size before writing. Threads block when the pending batch is at the max batch size.
+ */
+final class GroupCommitLogWriter implements LogWriter {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition batchFull = lock.newCondition();
+  private final Condition batchTaken = lock.newCondition();
+  private final LogEncoder encoder;
+  private final LogSink sink;
+  private final int maxBatchBytes;
+  private final long maxDelayNanos;
+  private EncodeBuffer pending;
+  private EncodeBuffer writing;
+  private boolean leaderActive;
+  private boolean pendingOwned;
+  private int flushWaiters;
+
+  /**
+   * Create the writer.
+   *
+   * @param encoder       The encoder used on the calling thread
+   * @param sink          The sink the batches are written to
+   * @param maxBatchBytes The size at which a batch is written without waiting for more events
+   * @param maxDelayNanos The time the leader waits for more events, 0 to write immediately
+   */
+  GroupCommitLogWriter(LogEncoder encoder, LogSink sink, int maxBatchBytes, long maxDelayNanos) {
+    this.encoder = encoder;
+    this.sink = sink;
+    this.maxBatchBytes = maxBatchBytes;
+    this.maxDelayNanos = maxDelayNanos;
+    this.pending = new EncodeBuffer(maxBatchBytes);
+    this.writing = new EncodeBuffer(maxBatchBytes);
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return encoder.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
+    try {
+      encoder.encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      append(buffer.array(), buffer.size());
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private void append(byte[] bytes, int length) {
+    lock.lock();
+    try {
+      while (pendingOwned && pending.size() + length > maxBatchBytes) {
+        batchFull.signal();
+        batchTaken.awaitUninterruptibly();
+      }
+      pending.write(bytes, 0, length);
+      if (pendingOwned) {
+        if (pending.size() >= maxBatchBytes) {
+          batchFull.signal();
+        }
+        return;
+      }
+      pendingOwned = true;
+      while (leaderActive) {
+        // wait for the write of the previous batch
+        batchTaken.awaitUninterruptibly();
+      }
+      leaderActive = true;
+      try {
+        lead();
+      } finally {
+        leaderActive = false;
+        batchTaken.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wait for the pending and current batches to be written and flush the sink.
+   */
+  @Override
+  public void flush(long timeoutMillis) {
+    long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    lock.lock();
+    flushWaiters++;
+    try {
+      while ((leaderActive || pendingOwned) && remaining > 0) {
+        batchFull.signal();
+        remaining = batchTaken.awaitNanos(remaining);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      flushWaiters--;
+      lock.unlock();
+    }
+    sink.flush();
+  }
+
+  @Override
+  public void close(long timeoutMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    flush(timeoutMillis);
+    sink.close(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+  }
+
+  /**
+   * Write the owned pending batch, called with the lock held.
+   */
+  private void lead() {
+    if (maxDelayNanos > 0) {
+      linger();
+    }
+    final EncodeBuffer batch = pending;
+    pending = writing;
+    writing = batch;
+    pendingOwned = false;
+    batchTaken.signalAll();
+    lock.unlock();
+    try {
+      sink.write(batch.array(), 0, batch.size());
+      sink.flush();
+    } finally {
+      lock.lock();
+      if (batch.array().length > maxBatchBytes) {
+        // do not retain the buffer grown by an oversize batch
+        writing = new EncodeBuffer(maxBatchBytes);
+      } else {
+        batch.reset();
+      }
+    }
+  }
+
+  private void linger() {
+    long remaining = maxDelayNanos;
+    while (remaining > 0 && pending.size() < maxBatchBytes && flushWaiters == 0) {
+      try {
+        remaining = batchFull.awaitNanos(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
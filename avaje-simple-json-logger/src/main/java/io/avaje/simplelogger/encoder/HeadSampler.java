@@ -0,0 +1,34 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.Level;
+
+/**
+ * Drops the lower level events of traces that are not sampled by the tracer.
+ * <p>
+ * The decision is made by the logger before the event is formatted or passed to
+ * the writer, aligning the logged requests with the traced requests. Events without
+ * a current trace and events above the sampling level are not dropped.
+ */
+final class HeadSampler {
+
+  private final TraceContext traceContext;
+  private final int level;
+
+  /**
+   * Create the sampler.
+   *
+   * @param traceContext The trace context providing the sampled flag
+   * @param level        The highest level of events dropped when not sampled
+   */
+  HeadSampler(TraceContext traceContext, Level level) {
+    this.traceContext = traceContext;
+    this.level = level.toInt();
+  }
+
+  /**
+   * Return true if the event at this level should be dropped.
+   */
+  boolean drop(int eventLevel) {
+    return eventLevel <= level && traceContext.notSampled();
+  }
+}
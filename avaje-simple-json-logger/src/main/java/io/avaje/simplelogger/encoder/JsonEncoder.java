@@ -1,200 +1,199 @@
 package io.avaje.simplelogger.encoder;
 
-import io.avaje.json.PropertyNames;
-import io.avaje.json.JsonWriter;
-import io.avaje.json.stream.JsonStream;
-import org.slf4j.MDC;
 import org.slf4j.event.Level;
 import org.slf4j.event.KeyValuePair;
-import org.slf4j.helpers.MessageFormatter;
 
-import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
-import static java.time.temporal.ChronoUnit.MILLIS;
+/**
+ * Encodes log events as JSON writing directly into the EncodeBuffer.
+ * <p>
+ * The constant prefix (component and env), the custom fields and property names are
+ * pre-encoded and the message is formatted directly into the output via
+ * {@link JsonMessageFormatter}.
+ */
+final class JsonEncoder implements LogEncoder {
 
-final class JsonEncoder {
+  private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+  private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
 
-  private final JsonStream json;
-  private final Map<String, String> customFieldsMap;
-  private final PropertyNames properties;
+  private final byte[] prefix;
+  private final byte[] customFields;
+  private final byte[][] names;
+  private final byte[][] levels;
   private final StackHasher stackHasher;
   private final ThrowableConverter throwableConverter;
-  private final DateTimeFormatter formatter;
+  private final TimestampCache timestamps;
   private final TraceContext traceContext;
-  private final int fieldExtra;
-  private final String component;
-  private final String environment;
   private final boolean includeStackHash;
 
   JsonEncoder(
         String[] propertyNames,
-        JsonStream json,
-        String component,
-        String environment,
+        byte[] prefix,
+        byte[] customFields,
         StackHasher stackHasher,
         DateTimeFormatter formatter,
         boolean includeStackHash,
-        Map<String, String> customFieldsMap,
         ThrowableConverter throwableConverter,
         TraceContext traceContext) {
 
-    this.json = json;
-    this.properties = this.json.properties(propertyNames);
-    this.component = component;
-    this.environment = environment;
+    this.prefix = prefix;
+    this.customFields = customFields;
+    this.names = new byte[propertyNames.length][];
+    for (int i = 0; i < propertyNames.length; i++) {
+      this.names[i] = jsonName(propertyNames[i]);
+    }
+    this.levels = new byte[Level.values().length][];
+    for (Level level : Level.values()) {
+      this.levels[level.ordinal()] = jsonString(level.toString());
+    }
     this.stackHasher = stackHasher;
-    this.formatter = formatter;
+    this.timestamps = new TimestampCache(formatter);
     this.includeStackHash = includeStackHash;
-    this.customFieldsMap = customFieldsMap;
     this.throwableConverter = throwableConverter;
     this.traceContext = traceContext;
-    this.fieldExtra = this.customFieldsMap.entrySet().stream()
-      .mapToInt(e -> e.getKey().length() + e.getValue().length() + 6)
-      .sum();
   }
 
-  byte[] encode(String loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
-    final String stackTraceBody = t == null ? "" : throwableConverter.convert(t);
-    final int extra = stackTraceBody.isEmpty() ? 0 : 20 + stackTraceBody.length();
+  @Override
+  public LoggerName loggerName(String name) {
+    return new LoggerName(name, names[4]);
+  }
 
-    String message = MessageFormatter.basicArrayFormat(messagePattern, arguments);
-    if (message == null) {
-      message = "";
-    }
+  /**
+   * Return the UTF-8 bytes of the quoted and escaped name followed by a colon.
+   */
+  static byte[] jsonName(String name) {
+    final var buffer = new EncodeBuffer(name.length() + 3);
+    buffer.appendJsonString(name);
+    buffer.write(':');
+    return buffer.toByteArray();
+  }
 
-    final var threadName = Thread.currentThread().getName();
-    final int bufferSize = 100 + extra + fieldExtra + keyValueExtra(keyValuePairs) + message.length() + threadName.length() + loggerName.length();
-    final var outputStream = new ByteArrayOutputStream(bufferSize);
+  /**
+   * Return the UTF-8 bytes of the quoted and escaped value.
+   */
+  static byte[] jsonString(String value) {
+    final var buffer = new EncodeBuffer(value.length() + 2);
+    buffer.appendJsonString(value);
+    return buffer.toByteArray();
+  }
 
-    try (var writer = json.writer(outputStream)) {
-      writer.beginObject(properties);
-      if (component != null) {
-        writer.name(0);
-        writer.value(component);
-      }
-      if (environment != null) {
-        writer.name(1);
-        writer.value(environment);
-      }
-      writer.name(2);
-      writer.value(formatter.format(OffsetDateTime.now().truncatedTo(MILLIS)));
-      writer.name(3);
-      writer.value(level.toString());
-      writer.name(4);
-      writer.value(loggerName);
-      writer.name(5);
-      writer.value(message);
-      writer.name(6);
-      writer.value(threadName);
-      String traceId = traceContext.traceId();
-      if (traceId != null) {
-        writer.name(11);
-        writer.value(traceId);
+  @Override
+  public void encode(EncodeBuffer out, LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    out.append(prefix);
+    out.write('"');
+    timestamps.appendJson(out, System.currentTimeMillis());
+    out.write('"');
+    name(out, 3);
+    out.append(levels[level.ordinal()]);
+    final byte[] loggerMember = loggerName.jsonMember(names[4]);
+    if (loggerMember != null) {
+      out.append(loggerMember);
+    } else {
+      name(out, 4);
+      out.append(loggerName.jsonValue());
+    }
+    name(out, 5);
+    out.write('"');
+    JsonMessageFormatter.format(out, messagePattern, arguments);
+    out.write('"');
+    name(out, 6);
+    out.appendJsonString(Thread.currentThread().getName());
+    String traceId = traceContext.traceId();
+    if (traceId != null) {
+      name(out, 11);
+      out.appendJsonString(traceId);
+    }
+    String spanId = traceContext.spanId();
+    if (spanId != null) {
+      name(out, 12);
+      out.appendJsonString(spanId);
+    }
+    if (t != null) {
+      // the frames are shared by the stack hash and stack trace
+      final ThrowableAnalysis analysis = new ThrowableAnalysis(stackHasher);
+      name(out, 7);
+      out.appendJsonString(t.getClass().getName());
+      final String exceptionMessage = t.getMessage();
+      if (exceptionMessage != null) {
+        name(out, 8);
+        out.appendJsonString(exceptionMessage);
       }
-      String spanId = traceContext.spanId();
-      if (spanId != null) {
-        writer.name(12);
-        writer.value(spanId);
+      if (includeStackHash) {
+        name(out, 9);
+        out.appendJsonString(analysis.hexHash(t));
       }
-      if (!stackTraceBody.isEmpty()) {
-        writer.name(7);
-        writer.value(t.getClass().getName());
-        writer.name(8);
-        writer.value(t.getMessage());
-        if (includeStackHash) {
-          String hash = stackHasher.hexHash(t);
-          writer.name(9);
-          writer.value(hash);
+      name(out, 10);
+      throwableConverter.writeJson(out, t, analysis);
+    }
+    if (keyValuePairs != null) {
+      for (KeyValuePair keyValuePair : keyValuePairs) {
+        if (keyValuePair == null) {
+          continue;
         }
-        writer.name(10);
-        writer.value(stackTraceBody);
+        name(out, String.valueOf(keyValuePair.key));
+        writeKeyValue(out, keyValuePair.value);
       }
-      if (keyValuePairs != null) {
-        for (KeyValuePair keyValuePair : keyValuePairs) {
-          if (keyValuePair == null) {
-            continue;
-          }
-          writer.name(String.valueOf(keyValuePair.key));
-          writeKeyValue(writer, keyValuePair.value);
+    }
+    out.append(customFields);
+    final Map<String, String> contextMap = SimpleMDCAdapter.contextMap();
+    if (!contextMap.isEmpty()) {
+      contextMap.forEach((k, v) -> {
+        if (v != null && !"trace_id".equals(k) && !"span_id".equals(k)) {
+          name(out, k);
+          out.appendJsonString(v);
         }
-      }
-      customFieldsMap.forEach((k, v) -> {
-        writer.name(k);
-        writer.rawValue(v);
       });
-      Map<String, String> contextMap = MDC.getCopyOfContextMap();
-      if (contextMap != null) {
-        contextMap.forEach((k, v) -> {
-          if (!"trace_id".equals(k) && !"span_id".equals(k)) {
-            writer.name(k);
-            writer.value(v);
-          }
-        });
-      }
-      writer.endObject();
-      writer.writeNewLine();
     }
-    return outputStream.toByteArray();
+    out.write('}');
+    out.write('\n');
   }
 
-  private static int keyValueExtra(List<KeyValuePair> keyValuePairs) {
-    if (keyValuePairs == null || keyValuePairs.isEmpty()) {
-      return 0;
-    }
-    int extra = 0;
-    for (KeyValuePair keyValuePair : keyValuePairs) {
-      if (keyValuePair == null) {
-        continue;
-      }
-      extra += keyValuePair.key == null ? 4 : keyValuePair.key.length();
-      extra += estimatedValueLength(keyValuePair.value);
-      extra += 6;
-    }
-    return extra;
+  private void name(EncodeBuffer out, int index) {
+    out.write(',');
+    out.append(names[index]);
   }
 
-  private static int estimatedValueLength(Object value) {
-    if (value == null) {
-      return 4;
-    } else if (value instanceof CharSequence) {
-      return ((CharSequence) value).length();
-    } else {
-      return 16;
-    }
+  private static void name(EncodeBuffer out, String name) {
+    out.write(',');
+    out.appendJsonString(name);
+    out.write(':');
   }
-  private static void writeKeyValue(JsonWriter writer, Object value) {
+
+  private static void writeKeyValue(EncodeBuffer out, Object value) {
     if (value == null) {
-      writer.nullValue();
+      out.append(NULL);
     } else if (value instanceof CharSequence) {
-      writer.value(value.toString());
+      out.appendJsonString((CharSequence) value);
     } else if (value instanceof Boolean) {
-      writer.value((Boolean) value);
-    } else if (value instanceof Integer) {
-      writer.value((Integer) value);
-    } else if (value instanceof Long) {
-      writer.value((Long) value);
-    } else if (value instanceof Double) {
-      writer.value((Double) value);
-    } else if (value instanceof Float) {
-      writer.value(((Float) value).doubleValue());
-    } else if (value instanceof Short) {
-      writer.value(((Short) value).intValue());
-    } else if (value instanceof Byte) {
-      writer.value(((Byte) value).intValue());
-    } else if (value instanceof BigDecimal) {
-      writer.value((BigDecimal) value);
-    } else if (value instanceof BigInteger) {
-      writer.value((BigInteger) value);
+      out.append((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      out.appendLong(((Number) value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(out, ((Number) value).doubleValue());
+    } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+      out.append(value.toString());
     } else if (value instanceof byte[]) {
-      writer.value((byte[]) value);
+      out.write('"');
+      out.append(Base64.getEncoder().encode((byte[]) value));
+      out.write('"');
+    } else {
+      out.appendJsonString(safeToString(value));
+    }
+  }
+
+  private static void writeDouble(EncodeBuffer out, double value) {
+    if (Double.isFinite(value)) {
+      out.append(Double.toString(value));
     } else {
-      writer.value(safeToString(value));
+      // NaN and Infinity are not valid JSON numbers
+      out.appendJsonString(Double.toString(value));
     }
   }
 
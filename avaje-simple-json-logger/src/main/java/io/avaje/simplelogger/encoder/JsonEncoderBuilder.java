@@ -13,7 +13,9 @@ final class JsonEncoderBuilder {
   private final Map<String, String> customFieldsMap = new HashMap<>();
   private JsonStream json;
   private StackHasher stackHasher;
-  private ThrowableConverter throwableConverter = new ThrowableConverter();
+  private ThrowableConverter throwableConverter;
+  private boolean structuredStackTrace;
+  private int stackTraceCacheSize = 256;
 
   private TimeZone timeZone = TimeZone.getDefault();
   /**
@@ -41,6 +43,23 @@ final class JsonEncoderBuilder {
     return this;
   }
 
+  /**
+   * Set the stack trace mode, "structured" to write an array of throwables with
+   * their frames, otherwise the stack trace text.
+   */
+  JsonEncoderBuilder stackTrace(String mode) {
+    this.structuredStackTrace = mode != null && "structured".equalsIgnoreCase(mode.trim());
+    return this;
+  }
+
+  /**
+   * Set the number of rendered stack trace frame blocks cached (0 for no cache).
+   */
+  JsonEncoderBuilder stackTraceCacheSize(int stackTraceCacheSize) {
+    this.stackTraceCacheSize = stackTraceCacheSize;
+    return this;
+  }
+
   JsonEncoderBuilder timeZone(TimeZone timeZone) {
     this.timeZone = timeZone;
     return this;
@@ -108,11 +127,57 @@ final class JsonEncoderBuilder {
     if (stackHasher == null) {
       stackHasher = new StackHasher(StackElementFilter.builder().allFilters().build());
     }
+    if (throwableConverter == null) {
+      throwableConverter = new ThrowableConverter(structuredStackTrace, stackTraceCacheSize);
+    }
     String[] keys = basePropertyNames(naming);
     String[] mappedPropertyNames = toPropertyNames(keys, propertyNames);
     final DateTimeFormatter formatter = TimeZoneUtils.jsonFormatter(timestampPattern, timeZone.toZoneId());
     final TraceContext traceContext = TraceContextFactory.create();
-    return new JsonEncoder(mappedPropertyNames, json, component, environment, stackHasher, formatter, includeStackHash, customFieldsMap, throwableConverter, traceContext);
+    final byte[] prefix = jsonPrefix(mappedPropertyNames, component, environment);
+    final byte[] customFields = jsonCustomFields(customFieldsMap);
+    return new JsonEncoder(mappedPropertyNames, prefix, customFields, stackHasher, formatter, includeStackHash, throwableConverter, traceContext);
+  }
+
+  /**
+   * Return the UTF-8 bytes of the constant start of every event.
+   * <p>
+   * This is the opening brace, component and env through to the timestamp property name.
+   */
+  static byte[] jsonPrefix(String[] propertyNames, String component, String environment) {
+    final var buffer = new EncodeBuffer(256);
+    buffer.write('{');
+    if (component != null) {
+      jsonMember(buffer, propertyNames[0]);
+      buffer.appendJsonString(component);
+      buffer.write(',');
+    }
+    if (environment != null) {
+      jsonMember(buffer, propertyNames[1]);
+      buffer.appendJsonString(environment);
+      buffer.write(',');
+    }
+    jsonMember(buffer, propertyNames[2]);
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Return the UTF-8 bytes of the custom fields written after the key value pairs,
+   * each member preceded by a comma.
+   */
+  static byte[] jsonCustomFields(Map<String, String> customFields) {
+    final var buffer = new EncodeBuffer(256);
+    customFields.forEach((key, rawJson) -> {
+      buffer.write(',');
+      jsonMember(buffer, key);
+      buffer.append(rawJson);
+    });
+    return buffer.toByteArray();
+  }
+
+  private static void jsonMember(EncodeBuffer buffer, String name) {
+    buffer.appendJsonString(name);
+    buffer.write(':');
   }
 
   static String[] basePropertyNames(String naming) {
@@ -2,28 +2,38 @@ package io.avaje.simplelogger.encoder;
 
 import org.slf4j.event.Level;
 import org.slf4j.event.KeyValuePair;
-import org.slf4j.helpers.Reporter;
 
-import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 
 final class JsonLogWriter implements LogWriter {
 
-  private final JsonEncoder encoder;
+  private final LogEncoder encoder;
   private final PrintStream out;
 
-  JsonLogWriter(JsonEncoder encoder, PrintStream out) {
+  JsonLogWriter(LogEncoder encoder, PrintStream out) {
     this.encoder = encoder;
     this.out = out;
   }
 
   @Override
-  public void log(String loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+  public LoggerName loggerName(String name) {
+    return encoder.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
     try {
-      out.write(encoder.encode(loggerName, level, messagePattern, arguments, t, keyValuePairs));
-    } catch (IOException e) {
-      Reporter.error("Failed to write to log", e);
+      encoder.encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      out.write(buffer.array(), 0, buffer.size());
+    } finally {
+      buffer.release();
     }
   }
+
+  @Override
+  public void flush(long timeoutMillis) {
+    out.flush();
+  }
 }
@@ -0,0 +1,151 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Formats SLF4J message patterns directly into the JSON output.
+ * <p>
+ * Walks the {@code {}} placeholders of the message pattern once, writing the literal
+ * segments and argument values JSON escaped into the buffer. This produces the same
+ * message as {@code MessageFormatter.basicArrayFormat()} without building an
+ * intermediate String.
+ */
+final class JsonMessageFormatter {
+
+  private static final char DELIM_START = '{';
+  private static final String DELIM_STR = "{}";
+  private static final char ESCAPE_CHAR = '\\';
+
+  private JsonMessageFormatter() {
+  }
+
+  /**
+   * Write the formatted message JSON escaped (without quotes) into the buffer.
+   */
+  static void format(EncodeBuffer out, String messagePattern, Object[] arguments) {
+    if (messagePattern == null) {
+      return;
+    }
+    if (arguments == null || arguments.length == 0) {
+      out.appendJsonEscaped(messagePattern);
+      return;
+    }
+    final int length = messagePattern.length();
+    int i = 0;
+    for (int argIndex = 0; argIndex < arguments.length; argIndex++) {
+      final int j = messagePattern.indexOf(DELIM_STR, i);
+      if (j == -1) {
+        // no more placeholders
+        break;
+      }
+      if (isEscapedDelimiter(messagePattern, j)) {
+        if (!isDoubleEscaped(messagePattern, j)) {
+          // placeholder was escaped, the argument is not consumed
+          argIndex--;
+          out.appendJsonEscaped(messagePattern, i, j - 1);
+          out.write(DELIM_START);
+          i = j + 1;
+        } else {
+          // the escape character is itself escaped
+          out.appendJsonEscaped(messagePattern, i, j - 1);
+          appendArgument(out, arguments[argIndex], null);
+          i = j + 2;
+        }
+      } else {
+        out.appendJsonEscaped(messagePattern, i, j);
+        appendArgument(out, arguments[argIndex], null);
+        i = j + 2;
+      }
+    }
+    out.appendJsonEscaped(messagePattern, i, length);
+  }
+
+  private static boolean isEscapedDelimiter(String messagePattern, int delimiterStartIndex) {
+    return delimiterStartIndex != 0 && messagePattern.charAt(delimiterStartIndex - 1) == ESCAPE_CHAR;
+  }
+
+  private static boolean isDoubleEscaped(String messagePattern, int delimiterStartIndex) {
+    return delimiterStartIndex >= 2 && messagePattern.charAt(delimiterStartIndex - 2) == ESCAPE_CHAR;
+  }
+
+  private static void appendArgument(EncodeBuffer out, Object value, Map<Object[], Boolean> seen) {
+    if (value == null) {
+      out.append("null");
+    } else if (value instanceof String) {
+      out.appendJsonEscaped((String) value);
+    } else if (value instanceof Integer || value instanceof Long) {
+      out.appendLong(((Number) value).longValue());
+    } else if (!value.getClass().isArray()) {
+      appendObject(out, value);
+    } else if (value instanceof Object[]) {
+      appendObjectArray(out, (Object[]) value, seen);
+    } else {
+      appendPrimitiveArray(out, value);
+    }
+  }
+
+  private static void appendObject(EncodeBuffer out, Object value) {
+    final String text;
+    try {
+      text = value.toString();
+    } catch (Throwable t) {
+      Reporter.error("Failed toString() invocation on an object of type [" + value.getClass().getName() + "]", t);
+      out.append("[FAILED toString()]");
+      return;
+    }
+    if (text == null) {
+      out.append("null");
+    } else {
+      out.appendJsonEscaped(text);
+    }
+  }
+
+  private static void appendObjectArray(EncodeBuffer out, Object[] array, Map<Object[], Boolean> seen) {
+    out.write('[');
+    if (seen == null) {
+      seen = new IdentityHashMap<>();
+    }
+    if (seen.put(array, Boolean.TRUE) == null) {
+      for (int i = 0; i < array.length; i++) {
+        if (i > 0) {
+          out.write(',');
+          out.write(' ');
+        }
+        appendArgument(out, array[i], seen);
+      }
+      seen.remove(array);
+    } else {
+      out.append("...");
+    }
+    out.write(']');
+  }
+
+  private static void appendPrimitiveArray(EncodeBuffer out, Object array) {
+    out.write('[');
+    final int length = Array.getLength(array);
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        out.write(',');
+        out.write(' ');
+      }
+      if (array instanceof int[]) {
+        out.appendLong(((int[]) array)[i]);
+      } else if (array instanceof long[]) {
+        out.appendLong(((long[]) array)[i]);
+      } else if (array instanceof short[]) {
+        out.appendLong(((short[]) array)[i]);
+      } else if (array instanceof byte[]) {
+        out.appendLong(((byte[]) array)[i]);
+      } else if (array instanceof char[]) {
+        out.appendJsonEscaped(String.valueOf(((char[]) array)[i]));
+      } else {
+        out.append(String.valueOf(Array.get(array, i)));
+      }
+    }
+    out.write(']');
+  }
+}
@@ -0,0 +1,85 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogWriter that routes events by level.
+ * <p>
+ * Events at or above the flush level are written to the urgent sink and flushed
+ * immediately. Other events are written to the buffered sink which is flushed when
+ * its buffer is full or periodically by a background thread.
+ * <p>
+ * When the urgent sink is the buffered sink (for example a file), the flush also writes
+ * the buffered events before it such that the order of events is preserved.
+ */
+final class LevelRoutingLogWriter implements LogWriter {
+
+  private final LogEncoder encoder;
+  private final LogSink bufferedSink;
+  private final LogSink urgentSink;
+  private final int flushLevel;
+  private final PeriodicFlusher flusher;
+
+  /**
+   * Create the writer.
+   *
+   * @param encoder             The encoder used on the calling thread
+   * @param bufferedSink        The sink for events below the flush level
+   * @param urgentSink          The sink for events at or above the flush level (can be the buffered sink)
+   * @param flushLevel          The level at or above which events are flushed immediately
+   * @param flushIntervalMillis The interval at which the buffered sink is flushed
+   * @param flushThreadName     The name of the thread flushing the buffered sink
+   */
+  LevelRoutingLogWriter(LogEncoder encoder, LogSink bufferedSink, LogSink urgentSink, Level flushLevel, long flushIntervalMillis, String flushThreadName) {
+    this.encoder = encoder;
+    this.bufferedSink = bufferedSink;
+    this.urgentSink = urgentSink;
+    this.flushLevel = flushLevel.toInt();
+    this.flusher = new PeriodicFlusher(flushThreadName, flushIntervalMillis, bufferedSink::flush);
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return encoder.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
+    try {
+      encoder.encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      if (level.toInt() >= flushLevel) {
+        urgentSink.write(level, buffer.array(), 0, buffer.size());
+        urgentSink.flush();
+      } else {
+        bufferedSink.write(level, buffer.array(), 0, buffer.size());
+      }
+    } finally {
+      buffer.release();
+    }
+  }
+
+  @Override
+  public void flush(long timeoutMillis) {
+    bufferedSink.flush();
+    if (urgentSink != bufferedSink) {
+      urgentSink.flush();
+    }
+  }
+
+  /**
+   * Stop the flush thread then close the sinks within the timeout.
+   */
+  @Override
+  public void close(long timeoutMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    bufferedSink.close(flusher.close(timeoutMillis));
+    if (urgentSink != bufferedSink) {
+      urgentSink.close(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.util.List;
+
+/**
+ * Encodes a log event into the bytes that are written to the output.
+ */
+interface LogEncoder {
+
+  /**
+   * Return the logger name with its pre-encoded forms.
+   */
+  default LoggerName loggerName(String name) {
+    return new LoggerName(name);
+  }
+
+  /**
+   * Encode the log event including the trailing new line into the buffer.
+   */
+  void encode(EncodeBuffer out, LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs);
+
+  /**
+   * Encode the log event returning the bytes including the trailing new line.
+   */
+  default byte[] encode(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
+    try {
+      encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      return buffer.toByteArray();
+    } finally {
+      buffer.release();
+    }
+  }
+
+}
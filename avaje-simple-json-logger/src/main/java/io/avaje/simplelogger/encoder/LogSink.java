@@ -0,0 +1,39 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.Level;
+
+/**
+ * Destination that encoded log events are written to.
+ */
+interface LogSink {
+
+  /**
+   * Write the encoded event bytes.
+   */
+  void write(byte[] bytes, int offset, int length);
+
+  /**
+   * Write the encoded event bytes of the given level, by default ignoring the level.
+   */
+  default void write(Level level, byte[] bytes, int offset, int length) {
+    write(bytes, offset, length);
+  }
+
+  /**
+   * Flush any buffered bytes to the underlying destination.
+   */
+  void flush();
+
+  /**
+   * Flush and close the underlying destination.
+   */
+  void close();
+
+  /**
+   * Flush and close the underlying destination waiting up to the timeout for any
+   * background work, by default the same as {@link #close()}.
+   */
+  default void close(long timeoutMillis) {
+    close();
+  }
+}
@@ -4,9 +4,39 @@ import org.slf4j.event.Level;
 import org.slf4j.event.KeyValuePair;
 
 import java.util.List;
+import java.util.Map;
 
 interface LogWriter {
 
-  void log(String loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs);
+  /**
+   * Return the logger name with its pre-encoded forms, created once per logger.
+   */
+  default LoggerName loggerName(String name) {
+    return new LoggerName(name);
+  }
+
+  void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs);
+
+  /**
+   * Return the number of log events dropped by level (due to overflow).
+   */
+  default Map<String, Long> droppedCounts() {
+    return Map.of();
+  }
+
+  /**
+   * Write any buffered or queued events waiting up to the given timeout.
+   */
+  default void flush(long timeoutMillis) {
+    // nothing buffered by default
+  }
+
+  /**
+   * Write any buffered or queued events and close the underlying destination
+   * waiting up to the given timeout.
+   */
+  default void close(long timeoutMillis) {
+    flush(timeoutMillis);
+  }
 
 }
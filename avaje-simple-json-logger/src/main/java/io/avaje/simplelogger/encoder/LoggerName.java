@@ -0,0 +1,78 @@
+package io.avaje.simplelogger.encoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The (abbreviated) logger name along with its pre-encoded forms.
+ * <p>
+ * Created once per logger such that the name is escaped and encoded once per
+ * logger rather than once per event.
+ */
+final class LoggerName {
+
+  private final String name;
+  private final byte[] utf8;
+  private final byte[] jsonValue;
+  private final byte[] jsonPropertyName;
+  private final byte[] jsonMember;
+
+  LoggerName(String name) {
+    this(name, null);
+  }
+
+  /**
+   * Create with the JSON member pre-encoded for the given property name.
+   *
+   * @param name             The logger name
+   * @param jsonPropertyName The encoded {@code "name":} bytes of the logger property
+   */
+  LoggerName(String name, byte[] jsonPropertyName) {
+    this.name = name;
+    this.utf8 = name.getBytes(StandardCharsets.UTF_8);
+    this.jsonValue = JsonEncoder.jsonString(name);
+    this.jsonPropertyName = jsonPropertyName;
+    if (jsonPropertyName == null) {
+      this.jsonMember = null;
+    } else {
+      final var buffer = new EncodeBuffer(jsonPropertyName.length + jsonValue.length + 1);
+      buffer.write(',');
+      buffer.append(jsonPropertyName);
+      buffer.append(jsonValue);
+      this.jsonMember = buffer.toByteArray();
+    }
+  }
+
+  /**
+   * Return the logger name.
+   */
+  String name() {
+    return name;
+  }
+
+  /**
+   * Return the name encoded as UTF-8.
+   */
+  byte[] utf8() {
+    return utf8;
+  }
+
+  /**
+   * Return the name as a quoted and escaped JSON string.
+   */
+  byte[] jsonValue() {
+    return jsonValue;
+  }
+
+  /**
+   * Return the {@code ,"name":"value"} member bytes if they were encoded for the
+   * given property name, otherwise null.
+   */
+  byte[] jsonMember(byte[] propertyName) {
+    return propertyName == jsonPropertyName ? jsonMember : null;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,263 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * LogSink that copies the encoded bytes into a memory mapped segment of the log file.
+ * <p>
+ * Each write is a memory copy with no system call, the operating system writes the
+ * dirty pages to the file asynchronously. When the segment is full (or the time period
+ * ends) the file is truncated to the bytes written and rolled as per the
+ * {@link RollingPolicy} and a new segment is mapped.
+ * <p>
+ * While a segment is active the file is extended to the segment size with the unused
+ * tail being zero bytes.
+ * <p>
+ * Segments are unmapped before the file is truncated and renamed (required on Windows)
+ * such that rolled segments are not held mapped until garbage collected. This uses
+ * {@code sun.misc.Unsafe.invokeCleaner} when available (jdk.unsupported).
+ */
+final class MappedFileSink implements LogSink {
+
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      final Class<?> type = Class.forName("sun.misc.Unsafe");
+      final Field field = type.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // not available, the segments are unmapped when garbage collected
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Path file;
+  private final RollingPolicy policy;
+  private final int segmentSize;
+  private final LongSupplier clock;
+  private final RolledFileCompressor compressor;
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  private int forcedPosition;
+  private long periodStart;
+  private long nextRollTime;
+
+  MappedFileSink(Path file, RollingPolicy policy, int segmentSize, boolean compress) {
+    this(file, policy, segmentSize, compress, System::currentTimeMillis);
+  }
+
+  MappedFileSink(Path file, RollingPolicy policy, int segmentSize, boolean compress, LongSupplier clock) {
+    this.file = file;
+    this.policy = policy;
+    this.segmentSize = segmentSize;
+    this.clock = clock;
+    open(clock.getAsLong(), 0);
+    this.compressor = compress ? new RolledFileCompressor(file, policy) : null;
+    if (compressor != null) {
+      compressor.submitExisting();
+    }
+  }
+
+  /**
+   * Open the file and map a segment large enough to hold at least the given number of bytes.
+   */
+  private void open(long now, int required) {
+    periodStart = policy.periodStart(now);
+    nextRollTime = policy.nextRollTime(now);
+    try {
+      final Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      final int end = dataEnd(channel);
+      if (end > 0) {
+        // the period of a file left from an earlier run
+        final long since = FileSink.lastModified(file, now);
+        periodStart = policy.periodStart(since);
+        nextRollTime = policy.nextRollTime(since);
+      }
+      final int size = Math.max(segmentSize, end + required);
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      segment.position(end);
+      forcedPosition = end;
+    } catch (IOException | RuntimeException e) {
+      Reporter.error("Failed to map log file " + file, e);
+      close(channel);
+      channel = null;
+      segment = null;
+    }
+  }
+
+  /**
+   * Return the end of the existing data ignoring the zero tail of a segment that
+   * was not truncated (for example when the JVM was killed).
+   */
+  private static int dataEnd(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    if (size == 0) {
+      return 0;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Log file too large to map, size " + size);
+    }
+    final MappedByteBuffer existing = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    int end = (int) size;
+    while (end > 0 && existing.get(end - 1) == 0) {
+      end--;
+    }
+    unmap(existing);
+    return end;
+  }
+
+  /**
+   * Unmap the buffer which must not be accessed afterwards.
+   */
+  static void unmap(MappedByteBuffer buffer) {
+    if (INVOKE_CLEANER != null) {
+      try {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        Reporter.error("Failed to unmap log file segment", e);
+      }
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    lock.lock();
+    try {
+      if (segment == null) {
+        // failed to map the file, discard
+        return;
+      }
+      final long now = clock.getAsLong();
+      if (now >= nextRollTime || length > segment.remaining()) {
+        roll(now, length);
+        if (segment == null) {
+          return;
+        }
+      }
+      segment.put(bytes, offset, length);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void roll(long now, int required) {
+    final int written = segment.position();
+    closeSegment();
+    if (written > 0) {
+      final Path rolled = policy.rolledPath(file, periodStart);
+      try {
+        FileSink.move(file, rolled);
+        if (compressor != null) {
+          compressor.submit(rolled);
+        }
+      } catch (IOException e) {
+        Reporter.error("Failed to roll log file " + file + " to " + rolled, e);
+      }
+    }
+    open(now, required);
+    if (compressor == null) {
+      try {
+        policy.applyRetention(file);
+      } catch (IOException e) {
+        Reporter.error("Failed to remove old log files for " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Unmap the segment, truncate the file to the bytes written and close the channel.
+   */
+  private void closeSegment() {
+    if (segment == null) {
+      return;
+    }
+    final MappedByteBuffer mapped = segment;
+    final int written = mapped.position();
+    segment = null;
+    try {
+      mapped.force();
+      unmap(mapped);
+      channel.truncate(written);
+    } catch (IOException | RuntimeException e) {
+      Reporter.error("Failed to truncate log file " + file, e);
+    }
+    close(channel);
+    channel = null;
+  }
+
+  /**
+   * Force the bytes written since the last flush to the file.
+   * <p>
+   * The bytes are in the page cache once copied such that they survive the JVM being
+   * killed, forcing them also makes them durable if the operating system crashes.
+   */
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      if (segment != null && segment.position() > forcedPosition) {
+        segment.force();
+        forcedPosition = segment.position();
+      }
+    } catch (RuntimeException e) {
+      Reporter.error("Failed to flush log file " + file, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    close(5_000);
+  }
+
+  /**
+   * Close the file waiting up to the timeout for queued files to be compressed.
+   */
+  @Override
+  public void close(long timeoutMillis) {
+    lock.lock();
+    try {
+      closeSegment();
+    } finally {
+      lock.unlock();
+    }
+    if (compressor != null) {
+      compressor.close(timeoutMillis);
+    }
+  }
+
+  private void close(FileChannel fileChannel) {
+    if (fileChannel != null) {
+      try {
+        fileChannel.close();
+      } catch (IOException e) {
+        Reporter.error("Failed to close log file " + file, e);
+      }
+    }
+  }
+}
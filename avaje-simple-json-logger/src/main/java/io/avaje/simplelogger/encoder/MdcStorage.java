@@ -0,0 +1,36 @@
+package io.avaje.simplelogger.encoder;
+
+import java.util.Map;
+
+/**
+ * Holds the immutable MDC map of each thread.
+ * <p>
+ * Child threads (platform and virtual) inherit the map of the parent thread by
+ * reference. With Java 21+ the multi-release variant of this class is used, which
+ * currently has the same semantics.
+ */
+final class MdcStorage {
+
+  private final InheritableThreadLocal<Map<String, String>> local = new InheritableThreadLocal<>();
+
+  /**
+   * Return the map of the current thread or null if there is none.
+   */
+  Map<String, String> get() {
+    return local.get();
+  }
+
+  /**
+   * Set the map of the current thread.
+   */
+  void set(Map<String, String> map) {
+    local.set(map);
+  }
+
+  /**
+   * Remove the map of the current thread.
+   */
+  void remove() {
+    local.remove();
+  }
+}
@@ -20,6 +20,18 @@ final class OtelTraceContext implements TraceContext {
     return ctx != null ? ctx.getSpanId() : null;
   }
 
+  @Override
+  public boolean sampled() {
+    SpanContext ctx = spanContext();
+    return ctx != null && ctx.isSampled();
+  }
+
+  @Override
+  public boolean notSampled() {
+    SpanContext ctx = spanContext();
+    return ctx != null && !ctx.isSampled();
+  }
+
   private static SpanContext spanContext() {
     SpanContext ctx = Span.current().getSpanContext();
     return ctx.isValid() ? ctx : null;
@@ -0,0 +1,48 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+/**
+ * What the async writer does when the ring buffer is full.
+ */
+enum OverflowPolicy {
+
+  /**
+   * Block the calling thread until there is space (no events are lost).
+   */
+  BLOCK,
+
+  /**
+   * Drop the new event.
+   */
+  DROP_NEWEST,
+
+  /**
+   * Drop the oldest queued event to make space for the new event.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Drop the new event if it is below the overflow level, otherwise block.
+   */
+  DROP_BELOW_LEVEL;
+
+  /**
+   * Parse the policy from a property value like {@code block}, {@code dropNewest} or {@code drop-oldest}.
+   * <p>
+   * An unknown value is reported and the default of block is used.
+   */
+  static OverflowPolicy of(String value) {
+    if (value == null || value.isBlank()) {
+      return BLOCK;
+    }
+    final String key = value.trim().replace("-", "").replace("_", "");
+    for (OverflowPolicy policy : values()) {
+      if (policy.name().replace("_", "").equalsIgnoreCase(key)) {
+        return policy;
+      }
+    }
+    Reporter.warn("Unknown overflow policy " + value.trim() + " for logger.async.overflow, using block");
+    return BLOCK;
+  }
+}
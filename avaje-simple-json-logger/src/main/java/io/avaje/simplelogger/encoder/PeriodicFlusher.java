@@ -0,0 +1,65 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Daemon thread that periodically flushes the buffered events of a writer.
+ */
+final class PeriodicFlusher {
+
+  private final Runnable flush;
+  private final long intervalNanos;
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  /**
+   * Create and start the flush thread.
+   *
+   * @param name           The name of the thread
+   * @param intervalMillis The interval at which the flush is run
+   * @param flush          The flush to run
+   */
+  PeriodicFlusher(String name, long intervalMillis, Runnable flush) {
+    this.flush = flush;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  private void run() {
+    while (running) {
+      LockSupport.parkNanos(this, intervalNanos);
+      if (!running) {
+        return;
+      }
+      try {
+        flush.run();
+      } catch (Throwable e) {
+        Reporter.error("Error flushing log events", e);
+      }
+    }
+  }
+
+  /**
+   * Stop the thread waiting up to the timeout for it to finish a flush in progress.
+   *
+   * @return The remaining timeout in millis
+   */
+  long close(long timeoutMillis) {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    running = false;
+    LockSupport.unpark(thread);
+    if (timeoutMillis > 0) {
+      try {
+        thread.join(timeoutMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+  }
+}
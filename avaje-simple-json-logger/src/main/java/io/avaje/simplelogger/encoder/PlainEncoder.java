@@ -0,0 +1,130 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.spi.LocationAwareLogger;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+import static io.avaje.simplelogger.encoder.JsonEncoder.safeToString;
+
+/**
+ * Encodes log events in the plain text format.
+ */
+final class PlainEncoder implements LogEncoder {
+
+  private static final char SP = ' ';
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+  private static final byte[] NAME_SEPARATOR = {' ', '-', ' '};
+
+  private final TimestampCache timestamps;
+  private final boolean showThreadName;
+  private final TraceContext traceContext;
+
+  PlainEncoder(DateTimeFormatter formatter, boolean showThreadName, TraceContext traceContext) {
+    this.timestamps = new TimestampCache(formatter);
+    this.showThreadName = showThreadName;
+    this.traceContext = traceContext;
+  }
+
+  @Override
+  public void encode(EncodeBuffer out, LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    out.append(timestamps.format(System.currentTimeMillis()));
+    out.write(SP);
+    if (showThreadName) {
+      out.write('[');
+      out.append(Thread.currentThread().getName());
+      out.write(']');
+      out.write(SP);
+    }
+    out.append(renderLevel(level.toInt()));
+    out.write(SP);
+    out.append(loggerName.utf8());
+    out.append(NAME_SEPARATOR);
+    final String message = MessageFormatter.basicArrayFormat(messagePattern, arguments);
+    out.append(String.valueOf(withContext(message, keyValuePairs)));
+    out.append(LINE_SEPARATOR);
+    if (t != null) {
+      PrintStream stackTrace = new PrintStream(out, false, StandardCharsets.UTF_8);
+      t.printStackTrace(stackTrace);
+      stackTrace.flush();
+    }
+  }
+
+  private String withContext(String message, List<KeyValuePair> keyValuePairs) {
+    final String traceId = traceContext.traceId();
+    final String spanId = traceContext.spanId();
+    final Map<String, String> contextMap = SimpleMDCAdapter.contextMap();
+    if (traceId == null && spanId == null && contextMap.isEmpty() && (keyValuePairs == null || keyValuePairs.isEmpty())) {
+      return message;
+    }
+    final StringBuilder content = new StringBuilder(40 + (message == null ? 0 : message.length()));
+    appendTraceContext(content, traceId, spanId);
+    appendMdc(content, contextMap);
+    appendKeyValues(content, keyValuePairs);
+    if (message != null) {
+      content.append(message);
+    }
+    return content.toString();
+  }
+
+  private static void appendTraceContext(StringBuilder content, String traceId, String spanId) {
+    if (traceId != null) {
+      content.append("trace_id=").append(traceId).append(SP);
+    }
+    if (spanId != null) {
+      content.append("span_id=").append(spanId).append(SP);
+    }
+  }
+
+  private static void appendMdc(StringBuilder content, Map<String, String> contextMap) {
+    if (contextMap.isEmpty()) {
+      return;
+    }
+    contextMap.forEach((key, value) -> {
+      if (!"trace_id".equals(key) && !"span_id".equals(key)) {
+        content.append(key)
+          .append('=')
+          .append(safeToString(value))
+          .append(SP);
+      }
+    });
+  }
+
+  private static void appendKeyValues(StringBuilder content, List<KeyValuePair> keyValuePairs) {
+    if (keyValuePairs == null || keyValuePairs.isEmpty()) {
+      return;
+    }
+    for (KeyValuePair keyValuePair : keyValuePairs) {
+      if (keyValuePair == null) {
+        continue;
+      }
+      content.append(keyValuePair.key)
+        .append('=')
+        .append(safeToString(keyValuePair.value))
+        .append(SP);
+    }
+  }
+
+  private String renderLevel(int levelInt) {
+    switch (levelInt) {
+      case LocationAwareLogger.TRACE_INT:
+        return "TRACE";
+      case LocationAwareLogger.DEBUG_INT:
+        return ("DEBUG");
+      case LocationAwareLogger.INFO_INT:
+        return "INFO";
+      case LocationAwareLogger.WARN_INT:
+        return "WARN";
+      case LocationAwareLogger.ERROR_INT:
+        return "ERROR";
+    }
+    throw new IllegalStateException("Unrecognized level [" + levelInt + "]");
+  }
+
+}
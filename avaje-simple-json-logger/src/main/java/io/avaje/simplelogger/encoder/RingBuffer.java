@@ -0,0 +1,194 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.Level;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer ring buffer of encoded log events.
+ * <p>
+ * Each slot owns a reusable byte array that the producer copies the encoded
+ * event into. Slots are claimed via CAS on the tail and published via the slot
+ * sequence such that the consumer only ever sees fully written events
+ * (based on the Vyukov bounded queue). Slots are consumed via CAS on the head
+ * such that producers can also discard the oldest event.
+ * <p>
+ * Slot arrays larger than {@link #MAX_RETAINED} are released once consumed such that
+ * the buffer retains at most capacity * 1KB (8MB with the default 8192 slots). Larger
+ * events are copied into an array allocated for the event.
+ */
+final class RingBuffer {
+
+  /**
+   * Slot arrays larger than this are not retained after being consumed.
+   */
+  static final int MAX_RETAINED = 1024;
+  private static final Level[] LEVELS = Level.values();
+
+  private final int mask;
+  private final byte[][] slots;
+  private final int[] lengths;
+  private final int[] levels;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  /**
+   * Array swapped into a slot by the consumer such that the slot is released before writing.
+   */
+  private byte[] spare;
+
+  RingBuffer(int capacity) {
+    int size = powerOfTwo(capacity);
+    this.mask = size - 1;
+    this.slots = new byte[size][];
+    this.lengths = new int[size];
+    this.levels = new int[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  static int powerOfTwo(int capacity) {
+    int size = 2;
+    while (size < capacity && size < (1 << 30)) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  /**
+   * Return the number of slots.
+   */
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Return the position of the next slot to claim, the number of events offered.
+   */
+  long claimed() {
+    return tail.get();
+  }
+
+  /**
+   * Return the position of the next slot to consume, the number of events written or dropped.
+   */
+  long consumed() {
+    return head.get();
+  }
+
+  /**
+   * Return the number of bytes of the slot arrays currently held.
+   */
+  long retainedBytes() {
+    long total = spare == null ? 0 : spare.length;
+    for (byte[] slot : slots) {
+      if (slot != null) {
+        total += slot.length;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Return true if there are no claimed slots.
+   */
+  boolean isEmpty() {
+    return head.get() >= tail.get();
+  }
+
+  /**
+   * Return true if all the slots are claimed.
+   */
+  boolean isFull() {
+    return tail.get() - head.get() > mask;
+  }
+
+  /**
+   * Copy the event bytes into the next free slot returning false if the buffer is full.
+   */
+  boolean offer(byte[] bytes, int offset, int length, int level) {
+    long pos = tail.get();
+    for (;;) {
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          byte[] slot = slots[index];
+          if (slot == null || slot.length < length) {
+            slot = new byte[Math.max(length, 256)];
+            slots[index] = slot;
+          }
+          System.arraycopy(bytes, offset, slot, 0, length);
+          lengths[index] = length;
+          levels[index] = level;
+          sequences.lazySet(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        return false;
+      } else {
+        pos = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Write all the published events to the sink returning the number of events written.
+   * <p>
+   * Only a single thread should drain the buffer, producers may concurrently
+   * discard events via {@link #dropOldest()}.
+   */
+  int drainTo(LogSink sink) {
+    int count = 0;
+    long pos = head.get();
+    for (;;) {
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - (pos + 1);
+      if (diff < 0) {
+        return count;
+      }
+      if (diff == 0 && head.compareAndSet(pos, pos + 1)) {
+        // swap in the spare array and release the slot before writing
+        final byte[] bytes = slots[index];
+        final int length = lengths[index];
+        final int level = levels[index];
+        slots[index] = spare;
+        sequences.lazySet(index, pos + mask + 1);
+        try {
+          sink.write(LEVELS[level], bytes, 0, length);
+        } finally {
+          spare = bytes.length > MAX_RETAINED ? null : bytes;
+        }
+        count++;
+      }
+      pos = head.get();
+    }
+  }
+
+  /**
+   * Discard the oldest published event returning its level or -1 if there was none.
+   */
+  int dropOldest() {
+    long pos = head.get();
+    for (;;) {
+      final int index = (int) pos & mask;
+      final long diff = sequences.get(index) - (pos + 1);
+      if (diff < 0) {
+        return -1;
+      }
+      if (diff == 0 && head.compareAndSet(pos, pos + 1)) {
+        final int level = levels[index];
+        if (slots[index].length > MAX_RETAINED) {
+          slots[index] = null;
+        }
+        sequences.lazySet(index, pos + mask + 1);
+        return level;
+      }
+      pos = head.get();
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses rolled log files with gzip on a low priority background thread.
+ * <p>
+ * Each file is compressed to a temporary file which is then atomically renamed
+ * to {@code <name>.gz} before the uncompressed file is deleted, such that a
+ * partially compressed file is never seen as a finished segment. Retention is
+ * applied after each file is compressed.
+ */
+final class RolledFileCompressor {
+
+  static final String GZ = ".gz";
+  static final String TMP = ".tmp";
+
+  private static final Path STOP = Path.of("");
+
+  private final BlockingQueue<Path> queue = new LinkedBlockingQueue<>();
+  private final Path activeFile;
+  private final RollingPolicy policy;
+  private final Thread thread;
+
+  RolledFileCompressor(Path activeFile, RollingPolicy policy) {
+    this.activeFile = activeFile;
+    this.policy = policy;
+    this.thread = new Thread(this::run, "avaje-logger-compress");
+    this.thread.setDaemon(true);
+    this.thread.setPriority(Thread.MIN_PRIORITY);
+    this.thread.start();
+  }
+
+  /**
+   * Delete any partially compressed files left by a crash and queue any rolled files
+   * that were not compressed (for example due to a restart).
+   */
+  void submitExisting() {
+    try {
+      for (Path orphan : RollingPolicy.matchingFiles(activeFile, RollingPolicy.rolledPattern(activeFile, Pattern.quote(GZ + TMP)))) {
+        Files.deleteIfExists(orphan);
+      }
+      for (Path path : RollingPolicy.rolledFiles(activeFile)) {
+        if (!path.getFileName().toString().endsWith(GZ)) {
+          submit(path);
+        }
+      }
+    } catch (IOException e) {
+      Reporter.error("Failed to list rolled log files for " + activeFile, e);
+    }
+  }
+
+  /**
+   * Queue the rolled file to be compressed.
+   */
+  void submit(Path rolledFile) {
+    queue.add(rolledFile);
+  }
+
+  private void run() {
+    for (;;) {
+      try {
+        final Path path = queue.take();
+        if (path == STOP) {
+          return;
+        }
+        compress(path);
+        policy.applyRetention(activeFile);
+      } catch (InterruptedException e) {
+        return;
+      } catch (Throwable e) {
+        Reporter.error("Error compressing rolled log files for " + activeFile, e);
+      }
+    }
+  }
+
+  private void compress(Path source) throws IOException {
+    if (!Files.exists(source)) {
+      // removed by retention
+      return;
+    }
+    final Path target = source.resolveSibling(source.getFileName() + GZ);
+    final Path tmp = source.resolveSibling(source.getFileName() + GZ + TMP);
+    try (InputStream in = Files.newInputStream(source);
+         OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 8192)) {
+      in.transferTo(out);
+    }
+    try {
+      Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.delete(source);
+  }
+
+  /**
+   * Compress the queued files and stop the background thread, waiting up to the given timeout.
+   */
+  void close(long timeoutMillis) {
+    queue.add(STOP);
+    if (timeoutMillis <= 0) {
+      // no time remaining, the daemon thread completes in the background
+      return;
+    }
+    try {
+      thread.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Determines when the log file is rolled, the name of the rolled files and how many
+ * rolled files are retained.
+ * <p>
+ * Rolled files are named using the start of the period they contain and an index,
+ * for example {@code app.2024-05-01.1.log} for the active file {@code app.log}
+ * (with a {@code .gz} suffix when compressed).
+ */
+final class RollingPolicy {
+
+  /**
+   * The time based rolling period.
+   */
+  enum Period {
+    NONE(null, "uuuu-MM-dd"),
+    HOURLY(ChronoUnit.HOURS, "uuuu-MM-dd-HH"),
+    DAILY(ChronoUnit.DAYS, "uuuu-MM-dd");
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter format;
+
+    Period(ChronoUnit unit, String pattern) {
+      this.unit = unit;
+      this.format = DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+    }
+
+    /**
+     * Return the period for the given value (none, hourly or daily), null means none.
+     */
+    static Period of(String value) {
+      if (value == null || value.isBlank()) {
+        return NONE;
+      }
+      try {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        Reporter.warn("Unknown period " + value.trim() + " for logger.file.rollPeriod expecting one of none, hourly or daily, using none");
+        return NONE;
+      }
+    }
+  }
+
+  private final long maxSize;
+  private final Period period;
+  private final ZoneId zoneId;
+  private final int maxHistory;
+  private final long totalSizeCap;
+
+  RollingPolicy(long maxSize, Period period, ZoneId zoneId, int maxHistory) {
+    this(maxSize, period, zoneId, maxHistory, 0);
+  }
+
+  /**
+   * Create the policy.
+   *
+   * @param maxSize      Roll when the file would exceed this size in bytes, 0 for no size limit
+   * @param period       The time based rolling period
+   * @param zoneId       The zone used to determine the period boundaries
+   * @param maxHistory   The number of rolled files to retain, 0 to retain all
+   * @param totalSizeCap The total bytes of rolled files to retain, 0 for no limit
+   */
+  RollingPolicy(long maxSize, Period period, ZoneId zoneId, int maxHistory, long totalSizeCap) {
+    this.maxSize = maxSize;
+    this.period = period;
+    this.zoneId = zoneId;
+    this.maxHistory = maxHistory;
+    this.totalSizeCap = totalSizeCap;
+  }
+
+  /**
+   * Parse a size like {@code 512}, {@code 100KB}, {@code 50MB} or {@code 1GB} into bytes.
+   */
+  static long parseSize(String value) {
+    if (value == null || value.isBlank()) {
+      return 0;
+    }
+    String size = value.trim().toUpperCase(Locale.ROOT);
+    long multiplier = 1;
+    if (size.endsWith("KB")) {
+      multiplier = 1024;
+    } else if (size.endsWith("MB")) {
+      multiplier = 1024 * 1024;
+    } else if (size.endsWith("GB")) {
+      multiplier = 1024 * 1024 * 1024;
+    }
+    if (multiplier > 1) {
+      size = size.substring(0, size.length() - 2).trim();
+    } else if (size.endsWith("B")) {
+      size = size.substring(0, size.length() - 1).trim();
+    }
+    try {
+      return Long.parseLong(size) * multiplier;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid size [" + value + "] expecting a value like 100MB");
+    }
+  }
+
+  /**
+   * Return true if the file should be rolled before writing the given number of bytes.
+   */
+  boolean sizeExceeded(long currentSize, int length) {
+    return maxSize > 0 && currentSize > 0 && currentSize + length > maxSize;
+  }
+
+  /**
+   * Return the start of the period that contains the given time (or the time itself for no period).
+   */
+  long periodStart(long epochMillis) {
+    if (period.unit == null) {
+      return epochMillis;
+    }
+    return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId)
+      .truncatedTo(period.unit)
+      .toInstant()
+      .toEpochMilli();
+  }
+
+  /**
+   * Return the time the period containing the given time ends, Long.MAX_VALUE for no period.
+   */
+  long nextRollTime(long epochMillis) {
+    if (period.unit == null) {
+      return Long.MAX_VALUE;
+    }
+    return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId)
+      .truncatedTo(period.unit)
+      .plus(1, period.unit)
+      .toInstant()
+      .toEpochMilli();
+  }
+
+  /**
+   * Return the path to roll the active file to for the given period start.
+   */
+  Path rolledPath(Path activeFile, long periodStart) {
+    final String stamp = period.format.format(Instant.ofEpochMilli(periodStart).atZone(zoneId));
+    final String prefix = baseName(activeFile) + '.' + stamp + '.';
+    final String extension = extension(activeFile);
+    int index = 1;
+    Path rolled;
+    do {
+      rolled = activeFile.resolveSibling(prefix + index + extension);
+      index++;
+    } while (Files.exists(rolled) || Files.exists(rolled.resolveSibling(rolled.getFileName() + RolledFileCompressor.GZ)));
+    return rolled;
+  }
+
+  /**
+   * Delete the oldest rolled files beyond the max history and total size cap.
+   */
+  void applyRetention(Path activeFile) throws IOException {
+    if (maxHistory <= 0 && totalSizeCap <= 0) {
+      return;
+    }
+    final List<Path> rolled = rolledFiles(activeFile);
+    int first = maxHistory > 0 ? Math.max(0, rolled.size() - maxHistory) : 0;
+    if (totalSizeCap > 0) {
+      long total = 0;
+      for (int i = rolled.size() - 1; i >= first; i--) {
+        total += size(rolled.get(i));
+        if (total > totalSizeCap) {
+          first = i + 1;
+          break;
+        }
+      }
+    }
+    for (int i = 0; i < first; i++) {
+      Files.deleteIfExists(rolled.get(i));
+    }
+  }
+
+  /**
+   * Return the rolled files of the active file ordered oldest first, excluding
+   * files that are in the process of being compressed.
+   * <p>
+   * Only names produced by {@link #rolledPath(Path, long)} match, that is
+   * {@code <base>.<stamp>.<index><ext>} with an optional {@code .gz} suffix, such
+   * that other files in the directory (like {@code app.properties}) are never deleted.
+   */
+  static List<Path> rolledFiles(Path activeFile) throws IOException {
+    return matchingFiles(activeFile, rolledPattern(activeFile, "(?:" + Pattern.quote(RolledFileCompressor.GZ) + ")?"));
+  }
+
+  /**
+   * Return the files in the directory of the active file with names matching the pattern ordered oldest first.
+   */
+  static List<Path> matchingFiles(Path activeFile, Pattern pattern) throws IOException {
+    final Path dir = activeFile.toAbsolutePath().getParent();
+    final List<Path> matched = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        if (pattern.matcher(path.getFileName().toString()).matches() && Files.isRegularFile(path)) {
+          matched.add(path);
+        }
+      }
+    }
+    matched.sort(Comparator.comparingLong(RollingPolicy::lastModified).thenComparing(Path::toString));
+    return matched;
+  }
+
+  /**
+   * Return the pattern matching the rolled file names of the active file followed by the suffix pattern.
+   */
+  static Pattern rolledPattern(Path activeFile, String suffixPattern) {
+    return Pattern.compile(Pattern.quote(baseName(activeFile) + '.')
+      + "\\d{4}-\\d{2}-\\d{2}(?:-\\d{2})?\\.\\d+"
+      + Pattern.quote(extension(activeFile))
+      + suffixPattern);
+  }
+
+  private static long lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static long size(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException e) {
+      return 0;
+    }
+  }
+
+  private static String baseName(Path file) {
+    final String name = file.getFileName().toString();
+    final int dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(0, dot) : name;
+  }
+
+  private static String extension(Path file) {
+    final String name = file.getFileName().toString();
+    final int dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(dot) : "";
+  }
+}
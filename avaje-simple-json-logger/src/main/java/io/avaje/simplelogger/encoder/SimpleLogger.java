@@ -1,24 +1,35 @@
 package io.avaje.simplelogger.encoder;
 
 import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
 import org.slf4j.event.Level;
 import org.slf4j.event.LoggingEvent;
 import org.slf4j.helpers.LegacyAbstractLogger;
 import org.slf4j.spi.LoggingEventAware;
 
+import java.util.List;
+
 import static org.slf4j.spi.LocationAwareLogger.*;
 
 final class SimpleLogger extends LegacyAbstractLogger implements LoggingEventAware {
 
   private final LogWriter writer;
-  private final String shortName;
+  private final LoggerName shortName;
+  private final FlightRecorder recorder;
+  private final HeadSampler sampler;
   private int level;
 
-  SimpleLogger(LogWriter writer, String name, String shortName, int level) {
+  SimpleLogger(LogWriter writer, String name, LoggerName shortName, int level) {
+    this(writer, name, shortName, level, null, null);
+  }
+
+  SimpleLogger(LogWriter writer, String name, LoggerName shortName, int level, FlightRecorder recorder, HeadSampler sampler) {
     this.writer = writer;
     this.name = name;
     this.shortName = shortName;
     this.level = level;
+    this.recorder = recorder;
+    this.sampler = sampler;
   }
 
   boolean setNewLevel(int newLevel) {
@@ -30,27 +41,42 @@ final class SimpleLogger extends LegacyAbstractLogger implements LoggingEventAwa
 
   @Override
   public boolean isTraceEnabled() {
-    return TRACE_INT >= level;
+    return isEnabledOrRecorded(TRACE_INT);
   }
 
   @Override
   public boolean isDebugEnabled() {
-    return DEBUG_INT >= level;
+    return isEnabledOrRecorded(DEBUG_INT);
   }
 
   @Override
   public boolean isInfoEnabled() {
-    return INFO_INT >= level;
+    return isEnabledOrRecorded(INFO_INT);
   }
 
   @Override
   public boolean isWarnEnabled() {
-    return WARN_INT >= level;
+    return isEnabledOrRecorded(WARN_INT);
   }
 
   @Override
   public boolean isErrorEnabled() {
-    return ERROR_INT >= level;
+    return isEnabledOrRecorded(ERROR_INT);
+  }
+
+  /**
+   * Return true if the level is enabled or is recorded by the flight recorder and
+   * the event is not dropped by head sampling.
+   * <p>
+   * This is the only place the sampler is evaluated, slf4j checks the level before
+   * each event is passed to {@link #write}. Events dropped by head sampling are neither
+   * written nor recorded.
+   */
+  private boolean isEnabledOrRecorded(int eventLevel) {
+    if (eventLevel < level && (recorder == null || eventLevel < recorder.level())) {
+      return false;
+    }
+    return sampler == null || !sampler.drop(eventLevel);
   }
 
   @Override
@@ -71,18 +97,27 @@ final class SimpleLogger extends LegacyAbstractLogger implements LoggingEventAwa
   @Override
   public void log(LoggingEvent event) {
     final Level eventLevel = event.getLevel();
-    if (eventLevel == null || !isEnabled(eventLevel.toInt())) {
+    if (eventLevel == null) {
       return;
     }
-    writer.log(shortName, eventLevel, event.getMessage(), event.getArgumentArray(), event.getThrowable(), event.getKeyValuePairs());
+    write(eventLevel, event.getMessage(), event.getArgumentArray(), event.getThrowable(), event.getKeyValuePairs());
   }
 
-  private boolean isEnabled(int eventLevel) {
-    return eventLevel >= level;
+  private void logNormalized(Level level, String messagePattern, Object[] arguments, Throwable t) {
+    write(level, messagePattern, arguments, t, null);
   }
 
-  private void logNormalized(Level level, String messagePattern, Object[] arguments, Throwable t) {
-    writer.log(shortName, level, messagePattern, arguments, t, null);
+  private void write(Level eventLevel, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final int levelInt = eventLevel.toInt();
+    if (levelInt >= level) {
+      if (recorder != null && levelInt >= ERROR_INT) {
+        // emit the recorded events that preceded the error
+        recorder.dump(writer);
+      }
+      writer.log(shortName, eventLevel, messagePattern, arguments, t, keyValuePairs);
+    } else if (recorder != null) {
+      recorder.record(shortName, eventLevel, messagePattern, arguments, t, keyValuePairs);
+    }
   }
 
 //    public void log(LoggingEvent event) {
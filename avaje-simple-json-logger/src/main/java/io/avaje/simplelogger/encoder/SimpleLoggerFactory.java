@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.slf4j.spi.LocationAwareLogger.ERROR_INT;
 
@@ -21,11 +22,23 @@ final class SimpleLoggerFactory implements LoggerContext {
   private final LogWriter logWriter;
   private final Abbreviator abbreviator;
   private final int defaultLogLevel;
+  private final long shutdownTimeoutMillis;
+  private final FlightRecorder recorder;
+  private final HeadSampler sampler;
+  private final AtomicBoolean closed = new AtomicBoolean();
 
   SimpleLoggerFactory(LogWriter logWriter, Abbreviator abbreviator, int defaultLogLevel, Map<String, String> nameLevels) {
+    this(logWriter, abbreviator, defaultLogLevel, nameLevels, 5_000, null, null);
+  }
+
+  SimpleLoggerFactory(LogWriter logWriter, Abbreviator abbreviator, int defaultLogLevel, Map<String, String> nameLevels,
+                      long shutdownTimeoutMillis, FlightRecorder recorder, HeadSampler sampler) {
     this.logWriter = logWriter;
     this.abbreviator = abbreviator;
     this.defaultLogLevel = defaultLogLevel;
+    this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    this.recorder = recorder;
+    this.sampler = sampler;
     nameLevels.forEach(this::putLevel);
   }
 
@@ -83,6 +96,23 @@ final class SimpleLoggerFactory implements LoggerContext {
     return changed;
   }
 
+  @Override
+  public Map<String, Long> droppedCounts() {
+    return logWriter.droppedCounts();
+  }
+
+  @Override
+  public void flush() {
+    logWriter.flush(shutdownTimeoutMillis);
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      logWriter.close(shutdownTimeoutMillis);
+    }
+  }
+
   private boolean adjustedKey(String key, Map<String, String> nameLevels) {
     return nameLevels.keySet().stream()
       .anyMatch(key::startsWith);
@@ -106,7 +136,7 @@ final class SimpleLoggerFactory implements LoggerContext {
    */
   private SimpleLogger create(String fullName) {
     final String shortName = abbreviator.abbreviate(fullName);
-    return new SimpleLogger(logWriter, fullName, shortName, level(fullName));
+    return new SimpleLogger(logWriter, fullName, logWriter.loggerName(shortName), level(fullName), recorder, sampler);
   }
 
   private int level(String name) {
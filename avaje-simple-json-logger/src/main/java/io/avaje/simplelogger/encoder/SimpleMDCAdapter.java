@@ -0,0 +1,200 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.MDC;
+import org.slf4j.helpers.ThreadLocalMapOfStacks;
+import org.slf4j.spi.MDCAdapter;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * MDCAdapter backed by immutable copy-on-write maps.
+ * <p>
+ * Each put or remove replaces the thread's map with a new immutable map such that
+ * the encoders can iterate the current map without copying it and async writers
+ * can capture it by reference. The MDC is typically written once per request and
+ * read on every log event.
+ * <p>
+ * The context can also be bound for the duration of a task via {@link #bind(Map)}
+ * and {@link #restore(Map)}, similar to a ScopedValue binding. This is used to
+ * propagate the context to tasks run by pooled threads which do not inherit the
+ * MDC of the thread that submitted the task.
+ */
+public final class SimpleMDCAdapter implements MDCAdapter {
+
+  private final MdcStorage local = new MdcStorage();
+  private final ThreadLocalMapOfStacks stacks = new ThreadLocalMapOfStacks();
+
+  /**
+   * Return the MDC context of the current thread without copying when possible.
+   * <p>
+   * The returned map must not be modified and is never null.
+   */
+  static Map<String, String> contextMap() {
+    final MDCAdapter adapter = MDC.getMDCAdapter();
+    if (adapter instanceof SimpleMDCAdapter) {
+      return ((SimpleMDCAdapter) adapter).snapshot();
+    }
+    final Map<String, String> copy = MDC.getCopyOfContextMap();
+    return copy == null ? Map.of() : copy;
+  }
+
+  /**
+   * Return the immutable context map of the current thread (empty rather than null).
+   */
+  public Map<String, String> snapshot() {
+    final Map<String, String> map = local.get();
+    return map == null ? Map.of() : map;
+  }
+
+  /**
+   * Bind the context to the current thread returning the previously bound map.
+   * <p>
+   * A context obtained via {@link #snapshot()} is immutable and bound without copying,
+   * other maps are copied. The previous map (which may be null) must be restored via
+   * {@link #restore(Map)}.
+   */
+  public Map<String, String> bind(Map<String, String> context) {
+    final Map<String, String> previous = local.get();
+    if (context instanceof Context) {
+      local.set(context);
+    } else {
+      setContextMap(context);
+    }
+    return previous;
+  }
+
+  /**
+   * Restore the map previously returned by {@link #bind(Map)}.
+   */
+  public void restore(Map<String, String> previous) {
+    if (previous == null) {
+      local.remove();
+    } else {
+      local.set(previous);
+    }
+  }
+
+  @Override
+  public void put(String key, String val) {
+    if (key == null) {
+      throw new IllegalArgumentException("key cannot be null");
+    }
+    final Map<String, String> map = local.get();
+    final Map<String, String> copy = map == null ? new LinkedHashMap<>() : new LinkedHashMap<>(map);
+    copy.put(key, val);
+    local.set(new Context(copy));
+  }
+
+  @Override
+  public String get(String key) {
+    final Map<String, String> map = local.get();
+    return map == null || key == null ? null : map.get(key);
+  }
+
+  @Override
+  public void remove(String key) {
+    final Map<String, String> map = local.get();
+    if (map == null || !map.containsKey(key)) {
+      return;
+    }
+    if (map.size() == 1) {
+      local.remove();
+    } else {
+      final Map<String, String> copy = new LinkedHashMap<>(map);
+      copy.remove(key);
+      local.set(new Context(copy));
+    }
+  }
+
+  @Override
+  public void clear() {
+    local.remove();
+  }
+
+  /**
+   * Return the keys of the current thread context or null if there is none.
+   */
+  public Set<String> getKeys() {
+    final Map<String, String> map = local.get();
+    return map == null ? null : map.keySet();
+  }
+
+  @Override
+  public Map<String, String> getCopyOfContextMap() {
+    final Map<String, String> map = local.get();
+    return map == null ? null : new HashMap<>(map);
+  }
+
+  @Override
+  public void setContextMap(Map<String, String> contextMap) {
+    if (contextMap == null || contextMap.isEmpty()) {
+      local.remove();
+    } else {
+      local.set(new Context(new LinkedHashMap<>(contextMap)));
+    }
+  }
+
+  @Override
+  public void pushByKey(String key, String value) {
+    stacks.pushByKey(key, value);
+  }
+
+  @Override
+  public String popByKey(String key) {
+    return stacks.popByKey(key);
+  }
+
+  @Override
+  public Deque<String> getCopyOfDequeByKey(String key) {
+    return stacks.getCopyOfDequeByKey(key);
+  }
+
+  @Override
+  public void clearDequeByKey(String key) {
+    stacks.clearDequeByKey(key);
+  }
+
+  /**
+   * Immutable context map created by this adapter such that it can be bound without copying.
+   */
+  private static final class Context extends AbstractMap<String, String> {
+
+    private final Map<String, String> map;
+
+    Context(Map<String, String> map) {
+      this.map = Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+      return map.entrySet();
+    }
+
+    @Override
+    public int size() {
+      return map.size();
+    }
+
+    @Override
+    public String get(Object key) {
+      return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return map.containsKey(key);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super String> action) {
+      map.forEach(action);
+    }
+  }
+}
@@ -43,7 +43,7 @@ final class StackHasher {
    */
   String hexHash(Throwable error) {
     // compute topmost error hash, but don't queue the complete hashes chain
-    return toHex(hash(error, null));
+    return new ThrowableAnalysis(this).hexHash(error);
   }
 
 //    /**
@@ -97,6 +97,26 @@ final class StackHasher {
     return hash;
   }
 
+  /**
+   * Return the frames of the error with their hashes computed in a single pass,
+   * obtaining the stack trace once and evaluating the filter once per frame.
+   */
+  Frames frames(Throwable error) {
+    final StackTraceElement[] elements = error.getStackTrace();
+    int hash = 0;
+    int filteredHash = 0;
+    int multiplier = 1;
+    for (StackTraceElement element : elements) {
+      final int elementHash = hash(element);
+      hash = 31 * hash + elementHash;
+      if (filter.accept(element)) {
+        filteredHash = 31 * filteredHash + elementHash;
+        multiplier *= 31;
+      }
+    }
+    return new Frames(elements, hash, filteredHash, multiplier);
+  }
+
   String toHex(int hash) {
     return String.format("%08x", hash);
   }
@@ -108,4 +128,43 @@ final class StackHasher {
     result = 31 * result + element.getLineNumber();
     return result;
   }
+
+  /**
+   * The frames of a throwable with their hashes.
+   */
+  static final class Frames {
+
+    private final StackTraceElement[] elements;
+    private final int hash;
+    private final int filteredHash;
+    private final int multiplier;
+
+    Frames(StackTraceElement[] elements, int hash, int filteredHash, int multiplier) {
+      this.elements = elements;
+      this.hash = hash;
+      this.filteredHash = filteredHash;
+      this.multiplier = multiplier;
+    }
+
+    /**
+     * Return the stack trace elements.
+     */
+    StackTraceElement[] elements() {
+      return elements;
+    }
+
+    /**
+     * Return the hash of all the frames.
+     */
+    int hash() {
+      return hash;
+    }
+
+    /**
+     * Return the hash continuing from the given hash with the frames accepted by the filter.
+     */
+    int filteredHash(int hash) {
+      return hash * multiplier + filteredHash;
+    }
+  }
 }
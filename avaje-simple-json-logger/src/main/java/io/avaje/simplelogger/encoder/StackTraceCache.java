@@ -0,0 +1,120 @@
+package io.avaje.simplelogger.encoder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of the rendered (JSON escaped) frames of a throwable.
+ * <p>
+ * The key is the stack hash of the frames with the number of frames and indent. All
+ * the frames are also compared on lookup to guard against hash collisions. Only the
+ * frames are cached, the type and message of each throwable are always rendered such
+ * that the same stack logged with different messages uses the cache.
+ */
+final class StackTraceCache {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<Key, Block> blocks;
+
+  StackTraceCache(int maxEntries) {
+    this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Block> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Return the key for the frames, or null when there are no frames.
+   */
+  Key key(StackHasher.Frames frames, int indent) {
+    final int length = frames.elements().length;
+    return length == 0 ? null : new Key(frames.hash(), length, indent);
+  }
+
+  /**
+   * Return the cached frames, or null if they are not cached.
+   */
+  Block get(Key key, StackTraceElement[] frames) {
+    final Block block;
+    lock.lock();
+    try {
+      block = blocks.get(key);
+    } finally {
+      lock.unlock();
+    }
+    return block != null && (block.frames == frames || Arrays.equals(block.frames, frames)) ? block : null;
+  }
+
+  /**
+   * Cache the rendered frames.
+   *
+   * @param key    The key of the frames
+   * @param frames The frames that were rendered
+   * @param bytes  The rendered bytes
+   * @param length The length of the rendered frames in characters (before escaping)
+   */
+  void put(Key key, StackTraceElement[] frames, byte[] bytes, int length) {
+    final Block block = new Block(frames, bytes, length);
+    lock.lock();
+    try {
+      blocks.put(key, block);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The rendered frames.
+   */
+  static final class Block {
+
+    private final StackTraceElement[] frames;
+    private final byte[] bytes;
+    private final int length;
+
+    Block(StackTraceElement[] frames, byte[] bytes, int length) {
+      this.frames = frames;
+      this.bytes = bytes;
+      this.length = length;
+    }
+
+    byte[] bytes() {
+      return bytes;
+    }
+
+    int length() {
+      return length;
+    }
+  }
+
+  static final class Key {
+
+    private final int hash;
+    private final int frames;
+    private final int indent;
+
+    Key(int hash, int frames, int indent) {
+      this.hash = hash;
+      this.frames = frames;
+      this.indent = indent;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return hash == other.hash && frames == other.frames && indent == other.indent;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * hash + frames) + indent;
+    }
+  }
+}
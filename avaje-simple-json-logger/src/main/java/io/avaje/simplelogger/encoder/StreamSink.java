@@ -0,0 +1,42 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.helpers.Reporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LogSink that writes to an OutputStream like {@code System.out}.
+ */
+final class StreamSink implements LogSink {
+
+  private final OutputStream out;
+
+  StreamSink(OutputStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    try {
+      out.write(bytes, offset, length);
+    } catch (IOException e) {
+      Reporter.error("Failed to write to log", e);
+    }
+  }
+
+  @Override
+  public void flush() {
+    try {
+      out.flush();
+    } catch (IOException e) {
+      Reporter.error("Failed to flush log", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    // never close the underlying stream (typically System.out)
+    flush();
+  }
+}
@@ -0,0 +1,167 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.Reporter;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LogWriter that writes to a channel (typically stdout via {@code FileDescriptor.out})
+ * bypassing the synchronized {@code PrintStream} of {@code System.out}.
+ * <p>
+ * Each thread appends its encoded events to one of a number of striped buffers chosen
+ * by thread id, such that threads rarely contend on the same lock. A stripe is written
+ * to the channel when it is full and all stripes are written periodically by a
+ * background thread. Only whole events are appended to a stripe and each stripe is
+ * written while holding the write lock, such that lines are never interleaved.
+ * <p>
+ * The events of a thread are written in order but the events of different threads
+ * can be written out of order by up to the flush interval.
+ */
+final class StripedLogWriter implements LogWriter {
+
+  private final LogEncoder encoder;
+  private final WritableByteChannel channel;
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final Stripe[] stripes;
+  private final int mask;
+  private final PeriodicFlusher flusher;
+
+  /**
+   * Create writing to stdout with two stripes per available processor.
+   */
+  static StripedLogWriter stdout(LogEncoder encoder, int stripeSize, long flushIntervalMillis) {
+    final int stripes = Runtime.getRuntime().availableProcessors() * 2;
+    final var channel = new FileOutputStream(FileDescriptor.out).getChannel();
+    return new StripedLogWriter(encoder, channel, stripes, stripeSize, flushIntervalMillis);
+  }
+
+  /**
+   * Create the writer.
+   *
+   * @param encoder             The encoder used on the calling thread
+   * @param channel             The channel written to
+   * @param stripes             The number of stripes (rounded up to a power of 2, between 2 and 256)
+   * @param stripeSize          The buffer size of each stripe
+   * @param flushIntervalMillis The interval at which all stripes are written to the channel
+   */
+  StripedLogWriter(LogEncoder encoder, WritableByteChannel channel, int stripes, int stripeSize, long flushIntervalMillis) {
+    this.encoder = encoder;
+    this.channel = channel;
+    final int count = Math.min(256, RingBuffer.powerOfTwo(stripes));
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      this.stripes[i] = new Stripe(stripeSize);
+    }
+    this.mask = count - 1;
+    this.flusher = new PeriodicFlusher("avaje-logger-stdout-flush", flushIntervalMillis, this::flush);
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return encoder.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final EncodeBuffer buffer = EncodeBuffer.acquire();
+    try {
+      encoder.encode(buffer, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      stripe().append(buffer.array(), buffer.size());
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private Stripe stripe() {
+    final long id = Thread.currentThread().getId();
+    return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask];
+  }
+
+  /**
+   * Write all the stripes to the channel.
+   */
+  @Override
+  public void flush(long timeoutMillis) {
+    flush();
+  }
+
+  private void flush() {
+    for (Stripe stripe : stripes) {
+      stripe.flush();
+    }
+  }
+
+  /**
+   * Stop the flush thread (waiting up to the timeout) and write all the stripes to the channel.
+   */
+  @Override
+  public void close(long timeoutMillis) {
+    flusher.close(timeoutMillis);
+    flush();
+  }
+
+  private void writeFully(ByteBuffer bytes) {
+    writeLock.lock();
+    try {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    } catch (IOException e) {
+      Reporter.error("Failed to write to log", e);
+      bytes.position(bytes.limit());
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private final class Stripe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer;
+
+    Stripe(int size) {
+      this.buffer = ByteBuffer.allocate(size);
+    }
+
+    void append(byte[] bytes, int length) {
+      lock.lock();
+      try {
+        if (length > buffer.remaining()) {
+          drain();
+          if (length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes, 0, length));
+            return;
+          }
+        }
+        buffer.put(bytes, 0, length);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void flush() {
+      lock.lock();
+      try {
+        drain();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void drain() {
+      if (buffer.position() > 0) {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package io.avaje.simplelogger.encoder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Writes a stack trace as a JSON array directly into the EncodeBuffer.
+ * <p>
+ * The array contains the throwable followed by its suppressed and causes (root cause
+ * last) each with its type, message and frames:
+ * <pre>{@code
+ * [{"type":"...","message":"...","frames":[{"class":"...","method":"...","file":"...","line":42}]},
+ *  {"type":"...","suppressed":true,"frames":[...]}]
+ * }</pre>
+ * Frames beyond the max depth per throwable are counted as {@code "omitted"}, and once
+ * the array exceeds the max length in bytes no further frames or throwables are written.
+ * A throwable that is reached again via a cause or suppressed cycle is not written again.
+ */
+final class StructuredStackTrace {
+
+  private static final byte[] TYPE = JsonEncoder.jsonName("type");
+  private static final byte[] MESSAGE = JsonEncoder.jsonName("message");
+  private static final byte[] SUPPRESSED = JsonEncoder.jsonName("suppressed");
+  private static final byte[] FRAMES = JsonEncoder.jsonName("frames");
+  private static final byte[] OMITTED = JsonEncoder.jsonName("omitted");
+  private static final byte[] CLASS = JsonEncoder.jsonName("class");
+  private static final byte[] METHOD = JsonEncoder.jsonName("method");
+  private static final byte[] FILE = JsonEncoder.jsonName("file");
+  private static final byte[] LINE = JsonEncoder.jsonName("line");
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+  private final EncodeBuffer out;
+  private final int maxDepthPerThrowable;
+  private final long limit;
+  private final StackTraceCache cache;
+  private final ThrowableAnalysis analysis;
+  private final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>(4));
+  private boolean first = true;
+
+  private StructuredStackTrace(EncodeBuffer out, int maxDepthPerThrowable, int maxLength, StackTraceCache cache, ThrowableAnalysis analysis) {
+    this.out = out;
+    this.maxDepthPerThrowable = maxDepthPerThrowable;
+    this.limit = (long) out.size() + maxLength;
+    this.cache = cache;
+    this.analysis = analysis;
+  }
+
+  /**
+   * Write the throwable as a JSON array using the cache (when not null) for the frames.
+   */
+  static void write(EncodeBuffer out, Throwable throwable, int maxDepthPerThrowable, int maxLength, StackTraceCache cache, ThrowableAnalysis analysis) {
+    out.write('[');
+    new StructuredStackTrace(out, maxDepthPerThrowable, maxLength, cache, analysis).append(throwable, false);
+    out.write(']');
+  }
+
+  private void append(Throwable throwable, boolean suppressed) {
+    if (throwable == null || out.size() > limit || !visited.add(throwable)) {
+      return;
+    }
+    if (!first) {
+      out.write(',');
+    }
+    first = false;
+    out.write('{');
+    out.append(TYPE);
+    out.appendJsonString(throwable.getClass().getName());
+    final String message = throwable.getMessage();
+    if (message != null) {
+      out.write(',');
+      out.append(MESSAGE);
+      out.appendJsonString(message);
+    }
+    if (suppressed) {
+      out.write(',');
+      out.append(SUPPRESSED);
+      out.append(TRUE);
+    }
+    appendFrames(analysis.frames(throwable));
+    out.write('}');
+
+    for (Throwable suppressedThrowable : throwable.getSuppressed()) {
+      append(suppressedThrowable, true);
+    }
+    append(throwable.getCause(), false);
+  }
+
+  private void appendFrames(StackHasher.Frames stackFrames) {
+    final StackTraceElement[] frames = stackFrames.elements();
+    final StackTraceCache.Key key = cache == null ? null : cache.key(stackFrames, 0);
+    if (key == null) {
+      appendFrameArray(frames);
+      return;
+    }
+    final StackTraceCache.Block cached = cache.get(key, frames);
+    if (cached != null && out.size() + cached.length() <= limit) {
+      out.append(cached.bytes());
+      return;
+    }
+    final int start = out.size();
+    appendFrameArray(frames);
+    if (out.size() <= limit) {
+      // not cut short by the max length
+      final byte[] rendered = Arrays.copyOfRange(out.array(), start, out.size());
+      cache.put(key, frames, rendered, rendered.length);
+    }
+  }
+
+  private void appendFrameArray(StackTraceElement[] frames) {
+    out.write(',');
+    out.append(FRAMES);
+    out.write('[');
+    int written = 0;
+    for (StackTraceElement frame : frames) {
+      if (written >= maxDepthPerThrowable || out.size() > limit) {
+        break;
+      }
+      if (written > 0) {
+        out.write(',');
+      }
+      appendFrame(frame);
+      written++;
+    }
+    out.write(']');
+    if (written < frames.length) {
+      out.write(',');
+      out.append(OMITTED);
+      out.appendLong(frames.length - written);
+    }
+  }
+
+  private void appendFrame(StackTraceElement frame) {
+    out.write('{');
+    out.append(CLASS);
+    out.appendJsonString(frame.getClassName());
+    out.write(',');
+    out.append(METHOD);
+    out.appendJsonString(frame.getMethodName());
+    final String fileName = frame.getFileName();
+    if (fileName != null) {
+      out.write(',');
+      out.append(FILE);
+      out.appendJsonString(fileName);
+    }
+    final int lineNumber = frame.getLineNumber();
+    if (lineNumber >= 0) {
+      out.write(',');
+      out.append(LINE);
+      out.appendLong(lineNumber);
+    }
+    out.write('}');
+  }
+}
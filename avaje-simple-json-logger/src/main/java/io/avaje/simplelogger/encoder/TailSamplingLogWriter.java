@@ -0,0 +1,231 @@
+package io.avaje.simplelogger.encoder;
+
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LogWriter that samples the events of traces, keeping all the events of a trace
+ * or none of them.
+ * <p>
+ * Events without a trace id, events of traces flagged as sampled by the tracer and
+ * events of the fraction of traces kept by the sample rate are written immediately.
+ * The events of the other traces are held unformatted for the window. When an error
+ * is logged in the window the held events are written (with their recordedAt time)
+ * followed by the error and the rest of the trace events in the window. Otherwise the
+ * held events are dropped when the window expires without being encoded, these are
+ * included in the dropped counts.
+ * <p>
+ * The sample decision is based on the trace id hash such that it is the same for all
+ * the events of a trace.
+ */
+final class TailSamplingLogWriter implements LogWriter {
+
+  private final LogWriter delegate;
+  private final TraceContext traceContext;
+  private final long sampleThreshold;
+  private final long windowNanos;
+  private final int maxEvents;
+  private final int maxTraces;
+  private final ConcurrentHashMap<String, Trace> traces = new ConcurrentHashMap<>();
+  private final Queue<Trace> traceOrder = new ConcurrentLinkedQueue<>();
+  private final LongAdder[] dropped = new LongAdder[Level.values().length];
+
+  /**
+   * Create the writer.
+   *
+   * @param delegate     The writer the sampled events are written to
+   * @param traceContext The trace context providing the trace id and sampled flag
+   * @param sampleRate   The fraction of traces kept without an error (0.0 to 1.0)
+   * @param windowMillis The time the events of a trace are held waiting for an error
+   * @param maxEvents    The number of events held per trace, the oldest are dropped
+   * @param maxTraces    The number of traces held, the oldest are dropped
+   */
+  TailSamplingLogWriter(LogWriter delegate, TraceContext traceContext, double sampleRate, long windowMillis, int maxEvents, int maxTraces) {
+    this.delegate = delegate;
+    this.traceContext = traceContext;
+    this.sampleThreshold = (long) (Math.max(0, Math.min(1, sampleRate)) * (1L << 31));
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxEvents = maxEvents;
+    this.maxTraces = maxTraces;
+    for (int i = 0; i < dropped.length; i++) {
+      dropped[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public LoggerName loggerName(String name) {
+    return delegate.loggerName(name);
+  }
+
+  @Override
+  public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    final String traceId = traceContext.traceId();
+    if (traceId == null || traceContext.sampled() || kept(traceId)) {
+      delegate.log(loggerName, level, messagePattern, arguments, t, keyValuePairs);
+      return;
+    }
+    final Trace trace = trace(traceId);
+    if (level == Level.ERROR) {
+      trace.emit(delegate);
+      delegate.log(loggerName, level, messagePattern, arguments, t, keyValuePairs);
+    } else if (!trace.hold(FlightRecorder.Event.of(loggerName, level, messagePattern, arguments, t, keyValuePairs))) {
+      delegate.log(loggerName, level, messagePattern, arguments, t, keyValuePairs);
+    }
+  }
+
+  /**
+   * Return true if the trace is kept by the sample rate.
+   */
+  boolean kept(String traceId) {
+    // mix the string hash as it is poorly distributed for similar ids
+    int hash = traceId.hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return (hash & Integer.MAX_VALUE) < sampleThreshold;
+  }
+
+  private Trace trace(String traceId) {
+    final long now = System.nanoTime();
+    final Trace trace = traces.get(traceId);
+    if (trace != null && !trace.expired(now)) {
+      return trace;
+    }
+    final Trace newTrace = new Trace(traceId, now + windowNanos, maxEvents, dropped);
+    final Trace current = traces.merge(traceId, newTrace, (existing, created) -> existing.expired(now) ? created : existing);
+    if (current == newTrace) {
+      traceOrder.add(newTrace);
+      evict(now);
+    }
+    return current;
+  }
+
+  /**
+   * Drop the expired traces and the oldest traces over the max counting their held events.
+   */
+  private void evict(long now) {
+    Trace eldest;
+    while ((eldest = traceOrder.peek()) != null && (eldest.expired(now) || traces.size() > maxTraces)) {
+      if (traceOrder.remove(eldest)) {
+        traces.remove(eldest.traceId, eldest);
+        eldest.discard();
+      }
+    }
+  }
+
+  /**
+   * Return the held events dropped added to the counts of the delegate.
+   */
+  @Override
+  public Map<String, Long> droppedCounts() {
+    evict(System.nanoTime());
+    final Map<String, Long> counts = new LinkedHashMap<>(delegate.droppedCounts());
+    for (Level level : Level.values()) {
+      counts.merge(level.name().toLowerCase(Locale.ROOT), dropped[level.ordinal()].sum(), Long::sum);
+    }
+    return counts;
+  }
+
+  @Override
+  public void flush(long timeoutMillis) {
+    delegate.flush(timeoutMillis);
+  }
+
+  @Override
+  public void close(long timeoutMillis) {
+    delegate.close(timeoutMillis);
+  }
+
+  /**
+   * The held events of a trace in the window.
+   */
+  private static final class Trace {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final String traceId;
+    private final long expiresAt;
+    private final FlightRecorder.Ring events;
+    private final LongAdder[] dropped;
+    private boolean emitting;
+    private boolean discarded;
+
+    Trace(String traceId, long expiresAt, int maxEvents, LongAdder[] dropped) {
+      this.traceId = traceId;
+      this.expiresAt = expiresAt;
+      this.events = new FlightRecorder.Ring(maxEvents);
+      this.dropped = dropped;
+    }
+
+    boolean expired(long now) {
+      return now - expiresAt >= 0;
+    }
+
+    /**
+     * Hold the event returning false if the trace is emitting and the event should be written.
+     */
+    boolean hold(FlightRecorder.Event event) {
+      lock.lock();
+      try {
+        if (emitting) {
+          return false;
+        }
+        if (discarded) {
+          // evicted while logging
+          dropped[event.level().ordinal()].increment();
+        } else {
+          events.add(event);
+        }
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Drop the held events (unless emitting) counting them as dropped.
+     */
+    void discard() {
+      lock.lock();
+      try {
+        if (!emitting && !discarded) {
+          discarded = true;
+          for (FlightRecorder.Event event : events.drain()) {
+            dropped[event.level().ordinal()].increment();
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Write the held events and switch to emitting the events of the trace.
+     */
+    void emit(LogWriter writer) {
+      lock.lock();
+      try {
+        if (!emitting) {
+          emitting = true;
+          for (FlightRecorder.Event event : events.drain()) {
+            event.writeTo(writer);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package io.avaje.simplelogger.encoder;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The frames of a logged throwable and its causes and suppressed throwables, shared
+ * by the stack hash and the stack trace rendering.
+ * <p>
+ * The frames of each throwable are obtained once (as {@link Throwable#getStackTrace()}
+ * clones the array) with the filter evaluated and the hash computed once per frame.
+ * An analysis is used for a single log event.
+ */
+final class ThrowableAnalysis {
+
+  private final StackHasher hasher;
+  private final Map<Throwable, StackHasher.Frames> frames = new IdentityHashMap<>(4);
+
+  ThrowableAnalysis(StackHasher hasher) {
+    this.hasher = hasher;
+  }
+
+  /**
+   * Return the frames of the throwable.
+   */
+  StackHasher.Frames frames(Throwable throwable) {
+    return frames.computeIfAbsent(throwable, hasher::frames);
+  }
+
+  /**
+   * Return the hexadecimal stack hash of the error and its causes.
+   */
+  String hexHash(Throwable error) {
+    return hasher.toHex(hash(error));
+  }
+
+  private int hash(Throwable error) {
+    // the causes up to a cause cycle, hashed root cause first
+    final List<Throwable> chain = new ArrayList<>(4);
+    for (Throwable cause = error; cause != null && !contains(chain, cause); cause = cause.getCause()) {
+      chain.add(cause);
+    }
+    int hash = 0;
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      final Throwable cause = chain.get(i);
+      hash = 31 * hash + cause.getClass().getName().hashCode();
+      hash = frames(cause).filteredHash(hash);
+    }
+    return hash;
+  }
+
+  private static boolean contains(List<Throwable> chain, Throwable throwable) {
+    for (Throwable element : chain) {
+      if (element == throwable) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package io.avaje.simplelogger.encoder;
 
+import java.util.Arrays;
+
 /**
  * formats stack traces by doing the following:
  *
@@ -63,38 +65,79 @@ final class ThrowableConverter {
    */
   private final Abbreviator abbreviator = Abbreviator.create(100);
   private final StackElementFilter stackElementFilter = StackElementFilter.any();
+  private final StackHasher stackHasher = new StackHasher(stackElementFilter);
   private final boolean rootCauseFirst = false;
+  private final boolean structured;
+  private final StackTraceCache cache;
   private final int bufferSize;
 
   ThrowableConverter() {
+    this(false, 0);
+  }
+
+  /**
+   * Create with structured true to write the JSON stack trace as an array of
+   * throwables with their frames rather than as a string.
+   *
+   * @param structured When true write the JSON stack trace as an array
+   * @param cacheSize  The number of rendered frame blocks cached (0 for no cache)
+   */
+  ThrowableConverter(boolean structured, int cacheSize) {
+    this.structured = structured;
+    this.cache = cacheSize > 0 ? new StackTraceCache(cacheSize) : null;
     this.bufferSize = Math.min(4096, this.maxLength + 100 > 0 ? this.maxLength + 100 : this.maxLength);
   }
 
   String convert(Throwable throwableProxy) {
-    final StringBuilder builder = new StringBuilder(bufferSize);
+    final TextOutput builder = new TextOutput(new StringBuilder(bufferSize));
+    append(builder, throwableProxy, new ThrowableAnalysis(stackHasher));
+    return builder.toString(this.maxLength - ELLIPSIS.length() - lineSeparator.length(), this.maxLength, ELLIPSIS + lineSeparator);
+  }
+
+  /**
+   * Write the stack trace as a JSON value directly into the buffer.
+   * <p>
+   * This is either the quoted and escaped text (the same as {@link #convert(Throwable)})
+   * or when structured an array of the throwables with their frames.
+   */
+  void writeJson(EncodeBuffer out, Throwable throwableProxy) {
+    writeJson(out, throwableProxy, new ThrowableAnalysis(stackHasher));
+  }
+
+  /**
+   * Write the stack trace as a JSON value using the frames of the analysis.
+   */
+  void writeJson(EncodeBuffer out, Throwable throwableProxy, ThrowableAnalysis analysis) {
+    if (structured) {
+      StructuredStackTrace.write(out, throwableProxy, maxDepthPerThrowable, maxLength, cache, analysis);
+      return;
+    }
+    final JsonOutput output = new JsonOutput(out, this.maxLength - ELLIPSIS.length() - lineSeparator.length(), this.maxLength);
+    out.write('"');
+    append(output, throwableProxy, analysis);
+    output.finish(ELLIPSIS + lineSeparator);
+    out.write('"');
+  }
+
+  private void append(Output builder, Throwable throwableProxy, ThrowableAnalysis analysis) {
     if (rootCauseFirst) {
-      appendRootCauseFirst(builder, null, REGULAR_EXCEPTION_INDENT, throwableProxy);
+      appendRootCauseFirst(builder, null, REGULAR_EXCEPTION_INDENT, throwableProxy, analysis);
     } else {
-      appendRootCauseLast(builder, null, REGULAR_EXCEPTION_INDENT, throwableProxy);
+      appendRootCauseLast(builder, null, REGULAR_EXCEPTION_INDENT, throwableProxy, analysis);
     }
-    if (builder.length() > this.maxLength) {
-      builder.setLength(this.maxLength - ELLIPSIS.length() - lineSeparator.length());
-      builder.append(ELLIPSIS).append(lineSeparator);
-    }
-    return builder.toString();
   }
 
   /**
    * Appends a throwable and recursively appends its causedby/suppressed throwables in "normal"
    * order (Root cause last).
    */
-  private void appendRootCauseLast(StringBuilder builder, String prefix, int indent, Throwable throwableProxy) {
+  private void appendRootCauseLast(Output builder, String prefix, int indent, Throwable throwableProxy, ThrowableAnalysis analysis) {
     if (throwableProxy == null || builder.length() > this.maxLength) {
       return;
     }
 
     appendFirstLine(builder, prefix, indent, throwableProxy);
-    appendStackTraceElements(builder, indent, throwableProxy);
+    appendStackTraceElements(builder, indent, throwableProxy, analysis);
 
     final Throwable[] suppressedThrowableProxies = throwableProxy.getSuppressed();
     if (suppressedThrowableProxies != null) {
@@ -104,28 +147,29 @@ final class ThrowableConverter {
           builder,
           SUPPRESSED,
           indent + SUPPRESSED_EXCEPTION_INDENT,
-          suppressedThrowableProxy);
+          suppressedThrowableProxy,
+          analysis);
       }
     }
-    appendRootCauseLast(builder, CAUSED_BY, indent, throwableProxy.getCause());
+    appendRootCauseLast(builder, CAUSED_BY, indent, throwableProxy.getCause(), analysis);
   }
 
   /**
    * Appends a throwable and recursively appends its causedby/suppressed throwables in "reverse"
    * order (Root cause first).
    */
-  private void appendRootCauseFirst(StringBuilder builder, String prefix, int indent, Throwable throwableProxy) {
+  private void appendRootCauseFirst(Output builder, String prefix, int indent, Throwable throwableProxy, ThrowableAnalysis analysis) {
     if (throwableProxy == null || builder.length() > this.maxLength) {
       return;
     }
 
     if (throwableProxy.getCause() != null) {
-      appendRootCauseFirst(builder, prefix, indent, throwableProxy.getCause());
+      appendRootCauseFirst(builder, prefix, indent, throwableProxy.getCause(), analysis);
       prefix = WRAPPED_BY;
     }
 
     appendFirstLine(builder, prefix, indent, throwableProxy);
-    appendStackTraceElements(builder, indent, throwableProxy);
+    appendStackTraceElements(builder, indent, throwableProxy, analysis);
 
     final Throwable[] suppressedThrowableProxies = throwableProxy.getSuppressed();
     if (suppressedThrowableProxies != null) {
@@ -135,19 +179,42 @@ final class ThrowableConverter {
           builder,
           SUPPRESSED,
           indent + SUPPRESSED_EXCEPTION_INDENT,
-          suppressedThrowableProxy);
+          suppressedThrowableProxy,
+          analysis);
       }
     }
   }
 
   /**
-   * Appends the frames of the throwable.
+   * Appends the frames of the throwable, using the cached frames rendered for the
+   * same stack when available.
    */
-  private void appendStackTraceElements(StringBuilder builder, int indent, Throwable throwableProxy) {
+  private void appendStackTraceElements(Output builder, int indent, Throwable throwableProxy, ThrowableAnalysis analysis) {
     if (builder.length() > this.maxLength) {
       return;
     }
-    final StackTraceElement[] stackTraceElements = throwableProxy.getStackTrace();
+    final StackHasher.Frames frames = analysis.frames(throwableProxy);
+    final StackTraceElement[] stackTraceElements = frames.elements();
+    final StackTraceCache.Key key = cache == null ? null : cache.key(frames, indent);
+    if (key == null) {
+      appendStackTraceElements(builder, indent, stackTraceElements);
+      return;
+    }
+    if (builder.append(cache.get(key, stackTraceElements))) {
+      return;
+    }
+    final int start = builder.mark();
+    appendStackTraceElements(builder, indent, stackTraceElements);
+    final byte[] rendered = builder.marked();
+    if (rendered != null) {
+      cache.put(key, stackTraceElements, rendered, builder.length() - start);
+    }
+  }
+
+  /**
+   * Appends the frames.
+   */
+  private void appendStackTraceElements(Output builder, int indent, StackTraceElement[] stackTraceElements) {
     final int commonFrames = 0;// isOmitCommonFrames() ? throwableProxy.getCommonFrames() : 0;
 
     boolean appendingExcluded = false;
@@ -236,7 +303,7 @@ final class ThrowableConverter {
   /**
    * Appends a placeholder indicating that some frames were not written.
    */
-  private void appendPlaceHolder(StringBuilder builder, int indent, int consecutiveExcluded, String message) {
+  private void appendPlaceHolder(Output builder, int indent, int consecutiveExcluded, String message) {
     indent(builder, indent);
     builder
       .append(ELLIPSIS)
@@ -260,7 +327,7 @@ final class ThrowableConverter {
   /**
    * Appends a single stack trace element.
    */
-  private void appendStackTraceElement(StringBuilder builder, int indent, StackTraceElement step, StackTraceElement previousStep) {
+  private void appendStackTraceElement(Output builder, int indent, StackTraceElement step, StackTraceElement previousStep) {
     if (builder.length() > this.maxLength) {
       return;
     }
@@ -286,7 +353,7 @@ final class ThrowableConverter {
   /**
    * Appends the first line containing the prefix and throwable message
    */
-  private void appendFirstLine(StringBuilder builder, String prefix, int indent, Throwable throwableProxy) {
+  private void appendFirstLine(Output builder, String prefix, int indent, Throwable throwableProxy) {
     if (builder.length() > this.maxLength) {
       return;
     }
@@ -297,12 +364,185 @@ final class ThrowableConverter {
     builder
       .append(abbreviator.abbreviate(throwableProxy.getClass().getName())) //throwableProxy.getClassName()))
       .append(": ")
-      .append(throwableProxy.getMessage())
+      .append(String.valueOf(throwableProxy.getMessage()))
       .append(lineSeparator);
   }
 
-  private void indent(StringBuilder builder, int indent) {
-    builder.append(" ".repeat(Math.max(0, indent)));
+  private void indent(Output builder, int indent) {
+    for (int i = 0; i < indent; i++) {
+      builder.append(" ");
+    }
+  }
+
+  /**
+   * The destination the stack trace text is appended to.
+   */
+  private interface Output {
+
+    /**
+     * Return the number of characters appended.
+     */
+    int length();
+
+    Output append(String value);
+
+    Output append(int value);
+
+    /**
+     * Append the cached frames returning false if they were not appended.
+     */
+    boolean append(StackTraceCache.Block frames);
+
+    /**
+     * Mark the start of rendering frames returning the current length.
+     */
+    int mark();
+
+    /**
+     * Return the bytes appended since the mark, or null if they can not be cached.
+     */
+    byte[] marked();
+  }
+
+  /**
+   * Appends to a StringBuilder truncating when converted to a String.
+   */
+  private static final class TextOutput implements Output {
+
+    private final StringBuilder builder;
+
+    TextOutput(StringBuilder builder) {
+      this.builder = builder;
+    }
+
+    @Override
+    public int length() {
+      return builder.length();
+    }
+
+    @Override
+    public Output append(String value) {
+      builder.append(value);
+      return this;
+    }
+
+    @Override
+    public Output append(int value) {
+      builder.append(value);
+      return this;
+    }
+
+    @Override
+    public boolean append(StackTraceCache.Block frames) {
+      return false;
+    }
+
+    @Override
+    public int mark() {
+      return builder.length();
+    }
+
+    @Override
+    public byte[] marked() {
+      return null;
+    }
+
+    String toString(int cutLength, int maxLength, String ellipsis) {
+      if (builder.length() > maxLength) {
+        builder.setLength(cutLength);
+        builder.append(ellipsis);
+      }
+      return builder.toString();
+    }
+  }
+
+  /**
+   * Appends JSON escaped to the EncodeBuffer without an intermediate String.
+   * <p>
+   * The characters beyond the max length are counted but not written and the
+   * position of the cut length is remembered such that the result is truncated
+   * the same as the text is.
+   */
+  private static final class JsonOutput implements Output {
+
+    private final EncodeBuffer out;
+    private final int cutLength;
+    private final int maxLength;
+    private int length;
+    private int cutPosition = -1;
+    private int markPosition;
+
+    JsonOutput(EncodeBuffer out, int cutLength, int maxLength) {
+      this.out = out;
+      this.cutLength = cutLength;
+      this.maxLength = maxLength;
+      if (cutLength <= 0) {
+        cutPosition = out.size();
+      }
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public Output append(String value) {
+      final int end = value.length();
+      int start = 0;
+      if (cutPosition == -1 && length + end >= cutLength) {
+        start = cutLength - length;
+        out.appendJsonEscaped(value, 0, start);
+        cutPosition = out.size();
+      }
+      final int writable = Math.min(end, Math.max(start, maxLength - length));
+      if (writable > start) {
+        out.appendJsonEscaped(value, start, writable);
+      }
+      length += end;
+      return this;
+    }
+
+    @Override
+    public Output append(int value) {
+      if (cutPosition == -1 && length + 11 < cutLength) {
+        // digits are single byte characters
+        final int before = out.size();
+        out.appendLong(value);
+        length += out.size() - before;
+        return this;
+      }
+      return append(Integer.toString(value));
+    }
+
+    @Override
+    public boolean append(StackTraceCache.Block frames) {
+      if (frames == null || cutPosition != -1 || length + frames.length() >= cutLength) {
+        // render the frames near the max length such that they are truncated
+        return false;
+      }
+      out.append(frames.bytes());
+      length += frames.length();
+      return true;
+    }
+
+    @Override
+    public int mark() {
+      markPosition = out.size();
+      return length;
+    }
+
+    @Override
+    public byte[] marked() {
+      return cutPosition != -1 ? null : Arrays.copyOfRange(out.array(), markPosition, out.size());
+    }
+
+    void finish(String ellipsis) {
+      if (length > maxLength) {
+        out.truncate(cutPosition);
+        out.appendJsonEscaped(ellipsis);
+      }
+    }
   }
 
 //  /**
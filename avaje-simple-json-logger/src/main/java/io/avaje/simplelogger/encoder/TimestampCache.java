@@ -0,0 +1,209 @@
+package io.avaje.simplelogger.encoder;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Renders millisecond timestamps reusing the formatted date/time within the same second.
+ * <p>
+ * Once per second the formatter output is split into the text before and after the
+ * millisecond digits such that subsequent timestamps in that second only render the
+ * millis. Patterns without a millisecond field reuse the whole value for the second and
+ * patterns where the millis can not be located fall back to formatting every timestamp.
+ * <p>
+ * The ISO formats omit the fraction when the millis are zero and the ISO date time formats
+ * also strip trailing zeros, both of which are handled such that the output is the same as
+ * {@code formatter.format()}.
+ */
+final class TimestampCache {
+
+  /**
+   * The millis are not located, format every timestamp.
+   */
+  private static final int UNCACHED = 0;
+  /**
+   * The pattern has no millis, the value is the same for the whole second.
+   */
+  private static final int CONSTANT = 1;
+  /**
+   * The millis are rendered as 3 digits.
+   */
+  private static final int FIXED = 2;
+  /**
+   * The millis are rendered with trailing zeros removed (ISO date time formats).
+   */
+  private static final int STRIPPED = 3;
+
+  private final DateTimeFormatter formatter;
+  private final ZoneId zoneId;
+  private final int style;
+  private volatile Second current;
+
+  TimestampCache(DateTimeFormatter formatter) {
+    this(formatter, ZoneId.systemDefault());
+  }
+
+  TimestampCache(DateTimeFormatter formatter, ZoneId zoneId) {
+    this.formatter = formatter;
+    this.zoneId = zoneId;
+    this.style = detectStyle(System.currentTimeMillis() / 1000);
+  }
+
+  /**
+   * Return the formatted timestamp for the given epoch millis.
+   */
+  String format(long epochMillis) {
+    final int millis = (int) Math.floorMod(epochMillis, 1000L);
+    final Second second = second(Math.floorDiv(epochMillis, 1000L));
+    if (second.style == CONSTANT) {
+      return second.prefix;
+    }
+    if (second.style == UNCACHED || millis == 0) {
+      return render(epochMillis);
+    }
+    final var sb = new StringBuilder(second.prefix.length() + 3 + second.suffix.length());
+    sb.append(second.prefix);
+    appendMillis(sb, millis, second.style);
+    return sb.append(second.suffix).toString();
+  }
+
+  /**
+   * Append the formatted timestamp JSON escaped (without quotes) to the buffer.
+   */
+  void appendJson(EncodeBuffer out, long epochMillis) {
+    final int millis = (int) Math.floorMod(epochMillis, 1000L);
+    final Second second = second(Math.floorDiv(epochMillis, 1000L));
+    if (second.style == CONSTANT) {
+      out.append(second.jsonPrefix);
+    } else if (second.style == UNCACHED || millis == 0) {
+      out.appendJsonEscaped(render(epochMillis));
+    } else {
+      out.append(second.jsonPrefix);
+      appendMillis(out, millis, second.style);
+      out.append(second.jsonSuffix);
+    }
+  }
+
+  private static void appendMillis(StringBuilder sb, int millis, int style) {
+    sb.append((char) ('0' + millis / 100));
+    if (style == FIXED || millis % 100 != 0) {
+      sb.append((char) ('0' + (millis / 10) % 10));
+      if (style == FIXED || millis % 10 != 0) {
+        sb.append((char) ('0' + millis % 10));
+      }
+    }
+  }
+
+  private static void appendMillis(EncodeBuffer out, int millis, int style) {
+    out.write('0' + millis / 100);
+    if (style == FIXED || millis % 100 != 0) {
+      out.write('0' + (millis / 10) % 10);
+      if (style == FIXED || millis % 10 != 0) {
+        out.write('0' + millis % 10);
+      }
+    }
+  }
+
+  private String render(long epochMillis) {
+    return formatter.format(OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId));
+  }
+
+  private Second second(long epochSecond) {
+    Second second = current;
+    if (second == null || second.epochSecond != epochSecond) {
+      second = split(epochSecond);
+      current = second;
+    }
+    return second;
+  }
+
+  /**
+   * Split the formatted value for the second into the text before and after the millis.
+   */
+  private Second split(long epochSecond) {
+    if (style == UNCACHED) {
+      return new Second(epochSecond, UNCACHED, "", "");
+    }
+    final long epochMillis = epochSecond * 1000;
+    final String first = render(epochMillis + 123);
+    if (style == CONSTANT) {
+      return new Second(epochSecond, CONSTANT, first, "");
+    }
+    final String second = render(epochMillis + 456);
+    final int pos = millisPosition(first, second);
+    if (pos < 0) {
+      return new Second(epochSecond, UNCACHED, "", "");
+    }
+    return new Second(epochSecond, style, first.substring(0, pos), first.substring(pos + 3));
+  }
+
+  private int detectStyle(long epochSecond) {
+    final long epochMillis = epochSecond * 1000;
+    final String first = render(epochMillis + 123);
+    final String second = render(epochMillis + 456);
+    if (first.equals(second)) {
+      return CONSTANT;
+    }
+    final int pos = millisPosition(first, second);
+    if (pos < 0) {
+      return UNCACHED;
+    }
+    final String prefix = first.substring(0, pos);
+    final String suffix = first.substring(pos + 3);
+    final String hundred = render(epochMillis + 100);
+    if (hundred.equals(prefix + "100" + suffix)) {
+      return FIXED;
+    }
+    if (hundred.equals(prefix + "1" + suffix) && render(epochMillis + 120).equals(prefix + "12" + suffix)) {
+      return STRIPPED;
+    }
+    return UNCACHED;
+  }
+
+  /**
+   * Return the position of the millis given values formatted with 123 and 456 millis, or -1.
+   */
+  private static int millisPosition(String first, String second) {
+    if (first.length() != second.length()) {
+      return -1;
+    }
+    int pos = 0;
+    while (pos < first.length() && first.charAt(pos) == second.charAt(pos)) {
+      pos++;
+    }
+    if (pos + 3 > first.length()
+      || !first.startsWith("123", pos)
+      || !second.startsWith("456", pos)
+      || !first.regionMatches(pos + 3, second, pos + 3, first.length() - pos - 3)) {
+      return -1;
+    }
+    return pos;
+  }
+
+  private static final class Second {
+
+    final long epochSecond;
+    final int style;
+    final String prefix;
+    final String suffix;
+    final byte[] jsonPrefix;
+    final byte[] jsonSuffix;
+
+    Second(long epochSecond, int style, String prefix, String suffix) {
+      this.epochSecond = epochSecond;
+      this.style = style;
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.jsonPrefix = jsonEscaped(prefix);
+      this.jsonSuffix = jsonEscaped(suffix);
+    }
+
+    private static byte[] jsonEscaped(String value) {
+      final var buffer = new EncodeBuffer(value.length() + 8);
+      buffer.appendJsonEscaped(value);
+      return buffer.toByteArray();
+    }
+  }
+}
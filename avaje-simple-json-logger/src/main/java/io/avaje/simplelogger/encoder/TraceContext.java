@@ -14,4 +14,18 @@ interface TraceContext {
    * Return the current span ID, or null if not available.
    */
   String spanId();
+
+  /**
+   * Return true if the current trace is sampled (recorded by the tracer).
+   */
+  default boolean sampled() {
+    return false;
+  }
+
+  /**
+   * Return true if there is a current trace and it is not sampled.
+   */
+  default boolean notSampled() {
+    return false;
+  }
 }
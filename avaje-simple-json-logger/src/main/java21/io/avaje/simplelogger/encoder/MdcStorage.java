@@ -0,0 +1,38 @@
+package io.avaje.simplelogger.encoder;
+
+import java.util.Map;
+
+/**
+ * Holds the immutable MDC map of each thread (Java 21+ variant).
+ * <p>
+ * This variant is a placeholder with the same semantics as the base class, platform
+ * and virtual threads inherit the map of the parent thread by reference. It is where
+ * a ScopedValue based binding goes once ScopedValue is a final (non preview) API.
+ * Until then the MDC is bound for the duration of a task explicitly via
+ * {@link io.avaje.simplelogger.MDCScope#run(Map, Runnable)}.
+ */
+final class MdcStorage {
+
+  private final InheritableThreadLocal<Map<String, String>> local = new InheritableThreadLocal<>();
+
+  /**
+   * Return the map of the current thread or null if there is none.
+   */
+  Map<String, String> get() {
+    return local.get();
+  }
+
+  /**
+   * Set the map of the current thread.
+   */
+  void set(Map<String, String> map) {
+    local.set(map);
+  }
+
+  /**
+   * Remove the map of the current thread.
+   */
+  void remove() {
+    local.remove();
+  }
+}
@@ -0,0 +1,53 @@
+package io.avaje.simplelogger;
+
+import io.avaje.simplelogger.encoder.SimpleMDCAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MDCScopeTest {
+
+  @AfterEach
+  void cleanup() {
+    MDC.clear();
+  }
+
+  @Test
+  void adapter() {
+    assertThat(MDC.getMDCAdapter()).isInstanceOf(SimpleMDCAdapter.class);
+  }
+
+  @Test
+  void run_bindsAndRestores() {
+    MDC.put("requestId", "r1");
+    Map<String, String> context = MDCScope.capture();
+
+    MDC.put("requestId", "r2");
+    MDCScope.run(context, () -> assertThat(MDC.get("requestId")).isEqualTo("r1"));
+    assertThat(MDC.get("requestId")).isEqualTo("r2");
+  }
+
+  @Test
+  void call_onOtherThread() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    // start the thread before the MDC is set such that it is not inherited
+    executor.submit(() -> null).get();
+
+    MDC.put("requestId", "r1");
+    Map<String, String> context = MDCScope.capture();
+    try {
+      String requestId = executor.submit(() -> MDCScope.call(context, () -> MDC.get("requestId"))).get();
+      assertThat(requestId).isEqualTo("r1");
+      String after = executor.submit(() -> MDC.get("requestId")).get();
+      assertThat(after).isNull();
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
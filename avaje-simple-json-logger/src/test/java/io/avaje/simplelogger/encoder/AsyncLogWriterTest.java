@@ -0,0 +1,260 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncLogWriterTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  @Test
+  void log_multipleThreads_allEventsWrittenInWholeLines() throws InterruptedException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    AsyncLogWriter writer = new AsyncLogWriter(encoder, new StreamSink(output), 16);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final int threadNumber = i;
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          writer.log(NAME, Level.INFO, "thread {} event {}", new Object[]{threadNumber, j}, null, null);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    writer.close(5_000);
+
+    List<String> lines = output.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    assertThat(lines).hasSize(4000);
+    assertThat(lines).allMatch(line -> line.contains("INFO test.Logger - thread "));
+  }
+
+  @Test
+  void log_afterClose_droppedAndCounted() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    AsyncLogWriter writer = new AsyncLogWriter(encoder, new StreamSink(output), 16);
+    writer.log(NAME, Level.INFO, "before close", null, null, null);
+    writer.close(5_000);
+
+    writer.log(NAME, Level.WARN, "after close", null, null, null);
+
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("before close").doesNotContain("after close");
+    assertThat(writer.droppedCounts()).containsEntry("warn", 1L);
+  }
+
+  @Test
+  void close_concurrentWithLogging_eventsWrittenOrCounted() throws InterruptedException {
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    for (int run = 0; run < 20; run++) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      AsyncLogWriter writer = new AsyncLogWriter(encoder, new StreamSink(output), 64);
+      CountDownLatch started = new CountDownLatch(4);
+      List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Thread thread = new Thread(() -> {
+          started.countDown();
+          for (int j = 0; j < 2000; j++) {
+            writer.log(NAME, Level.INFO, "event {}", new Object[]{j}, null, null);
+          }
+        });
+        threads.add(thread);
+        thread.start();
+      }
+      started.await();
+      writer.close(5_000);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      long written = output.toString(StandardCharsets.UTF_8).lines().count();
+      assertThat(written + writer.droppedCounts().get("info")).isEqualTo(8000L);
+    }
+  }
+
+  @Test
+  void close_timeout_sinkClosedByWriterThreadAfterDrain() throws InterruptedException {
+    BlockingSink sink = new BlockingSink();
+    AsyncLogWriter writer = fullWriter(sink, OverflowPolicy.BLOCK);
+
+    writer.close(50);
+    assertThat(sink.closed.getCount()).isEqualTo(1L);
+
+    sink.release.countDown();
+    assertThat(sink.closed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(sink.output.toString(StandardCharsets.UTF_8)).contains("e0", "e1", "e2");
+  }
+
+  @Test
+  void flush_underLoad_completesOnceQueuedEventsWritten() throws InterruptedException {
+    FlushRecordingSink sink = new FlushRecordingSink();
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    AsyncLogWriter writer = new AsyncLogWriter(encoder, sink, 64);
+    AtomicBoolean logging = new AtomicBoolean(true);
+    Thread background = new Thread(() -> {
+      while (logging.get()) {
+        writer.log(NAME, Level.DEBUG, "background", null, null, null);
+      }
+    });
+    background.start();
+    for (int i = 0; i < 100; i++) {
+      writer.log(NAME, Level.INFO, "event {}", new Object[]{i}, null, null);
+    }
+
+    writer.flush(5_000);
+    String flushed = sink.flushed;
+    logging.set(false);
+    background.join();
+    writer.close(5_000);
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(flushed).contains("event " + i + System.lineSeparator());
+    }
+  }
+
+  @Test
+  void dropNewest_whenFull_dropsAndCountsNewEvents() throws InterruptedException {
+    BlockingSink sink = new BlockingSink();
+    AsyncLogWriter writer = fullWriter(sink, OverflowPolicy.DROP_NEWEST);
+
+    writer.log(NAME, Level.DEBUG, "e3", null, null, null);
+    writer.log(NAME, Level.ERROR, "e4", null, null, null);
+
+    assertThat(writer.droppedCounts()).containsEntry("debug", 1L);
+    assertThat(writer.droppedCounts()).containsEntry("error", 1L);
+    sink.release.countDown();
+    writer.close(5_000);
+    assertThat(sink.output.toString(StandardCharsets.UTF_8)).contains("e0", "e1", "e2").doesNotContain("e3");
+  }
+
+  @Test
+  void dropOldest_whenFull_dropsQueuedEvent() throws InterruptedException {
+    BlockingSink sink = new BlockingSink();
+    AsyncLogWriter writer = fullWriter(sink, OverflowPolicy.DROP_OLDEST);
+
+    writer.log(NAME, Level.WARN, "e3", null, null, null);
+
+    assertThat(writer.droppedCounts()).containsEntry("info", 1L);
+    assertThat(writer.droppedCounts()).containsEntry("warn", 0L);
+    sink.release.countDown();
+    writer.close(5_000);
+    String output = sink.output.toString(StandardCharsets.UTF_8);
+    assertThat(output).contains("e0", "e2", "e3").doesNotContain("e1");
+  }
+
+  @Test
+  void dropBelowLevel_whenFull_dropsLowerLevelEvents() throws InterruptedException {
+    BlockingSink sink = new BlockingSink();
+    AsyncLogWriter writer = fullWriter(sink, OverflowPolicy.DROP_BELOW_LEVEL);
+
+    writer.log(NAME, Level.DEBUG, "e3", null, null, null);
+    writer.log(NAME, Level.INFO, "e4", null, null, null);
+
+    assertThat(writer.droppedCounts()).containsEntry("debug", 1L);
+    assertThat(writer.droppedCounts()).containsEntry("info", 1L);
+    sink.release.countDown();
+    writer.close(5_000);
+  }
+
+  @Test
+  void flush_waitsForQueuedEventsToBeWritten() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    AsyncLogWriter writer = new AsyncLogWriter(encoder, new StreamSink(output), 1024);
+    for (int i = 0; i < 100; i++) {
+      writer.log(NAME, Level.INFO, "event {}", new Object[]{i}, null, null);
+    }
+
+    writer.flush(5_000);
+    List<String> lines = output.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    assertThat(lines).hasSize(100);
+    writer.close(5_000);
+  }
+
+  @Test
+  void overflowPolicy_of() {
+    assertThat(OverflowPolicy.of(null)).isEqualTo(OverflowPolicy.BLOCK);
+    assertThat(OverflowPolicy.of("dropNewest")).isEqualTo(OverflowPolicy.DROP_NEWEST);
+    assertThat(OverflowPolicy.of("drop-oldest")).isEqualTo(OverflowPolicy.DROP_OLDEST);
+    assertThat(OverflowPolicy.of("DROP_BELOW_LEVEL")).isEqualTo(OverflowPolicy.DROP_BELOW_LEVEL);
+    assertThat(OverflowPolicy.of("dropNewst")).isEqualTo(OverflowPolicy.BLOCK);
+  }
+
+  /**
+   * Return a writer with the writer thread blocked on e0 and the 2 slot ring buffer full (e1, e2).
+   */
+  private AsyncLogWriter fullWriter(BlockingSink sink, OverflowPolicy policy) throws InterruptedException {
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    AsyncLogWriter writer = new AsyncLogWriter(encoder, sink, 2, policy, Level.WARN);
+    writer.log(NAME, Level.INFO, "e0", null, null, null);
+    sink.entered.await();
+    writer.log(NAME, Level.INFO, "e1", null, null, null);
+    writer.log(NAME, Level.INFO, "e2", null, null, null);
+    return writer;
+  }
+
+  private static final class BlockingSink implements LogSink {
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      output.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  private static final class FlushRecordingSink implements LogSink {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private volatile String flushed = "";
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      output.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() {
+      flushed = output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
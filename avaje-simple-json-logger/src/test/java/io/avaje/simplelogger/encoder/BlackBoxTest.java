@@ -0,0 +1,115 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlackBoxTest {
+
+  @Test
+  void decode_notWrapped() throws IOException {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    BlackBox blackBox = BlackBox.create(file, 1024);
+    write(blackBox, "{\"a\":1}\n");
+    write(blackBox, "{\"a\":2}\n");
+
+    assertThat(decode(file)).isEqualTo("{\"a\":1}\n{\"a\":2}\n");
+  }
+
+  @Test
+  void decode_wrapped_skipsPartialOldest() throws IOException {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    BlackBox blackBox = BlackBox.create(file, 32);
+    for (int i = 0; i < 10; i++) {
+      write(blackBox, "{\"a\":" + i + "}\n");
+    }
+    // the oldest event can not be known to be complete so is skipped
+    assertThat(decode(file)).isEqualTo("{\"a\":7}\n{\"a\":8}\n{\"a\":9}\n");
+
+    write(blackBox, "{\"a\":10}\n");
+    assertThat(decode(file)).isEqualTo("{\"a\":8}\n{\"a\":9}\n{\"a\":10}\n");
+  }
+
+  @Test
+  void write_concurrentThreads_allEventsComplete() throws Exception {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    BlackBox blackBox = BlackBox.create(file, 1024 * 1024);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final int threadNumber = i;
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          write(blackBox, "{\"thread\":" + threadNumber + ",\"event\":" + j + "}\n");
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    List<String> lines = decode(file).lines().collect(Collectors.toList());
+    assertThat(lines).hasSize(8000);
+    assertThat(lines).allMatch(line -> line.matches("\\{\"thread\":\\d,\"event\":\\d+}"));
+  }
+
+  @Test
+  void create_existing_renamedToPrev() throws IOException {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    BlackBox blackBox = BlackBox.create(file, 1024);
+    write(blackBox, "{\"before\":\"crash\"}\n");
+
+    BlackBox.create(file, 1024);
+    assertThat(decode(file.resolveSibling("app.blackbox.prev"))).isEqualTo("{\"before\":\"crash\"}\n");
+    assertThat(decode(file)).isEqualTo("");
+  }
+
+  @Test
+  void encoder_copiesEncodedEvent() throws IOException {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    LogEncoder encoder = new BlackBoxEncoder((out, loggerName, level, messagePattern, arguments, t, keyValuePairs) -> {
+      out.append(("{\"message\":\"" + messagePattern + "\"}\n").getBytes(StandardCharsets.UTF_8));
+    }, BlackBox.create(file, 1024));
+
+    EncodeBuffer buffer = new EncodeBuffer(64);
+    buffer.append("prefix".getBytes(StandardCharsets.UTF_8));
+    encoder.encode(buffer, new LoggerName("test"), null, "hello", null, null, null);
+
+    assertThat(decode(file)).isEqualTo("{\"message\":\"hello\"}\n");
+  }
+
+  @Test
+  void run_returnsExitCode() throws IOException {
+    Path file = Files.createTempDirectory("blackbox").resolve("app.blackbox");
+    write(BlackBox.create(file, 1024), "{\"a\":1}\n");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    assertThat(BlackBoxDecoder.run(new String[]{file.toString()}, new PrintStream(out), new PrintStream(err))).isEqualTo(0);
+    assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("{\"a\":1}\n");
+    assertThat(BlackBoxDecoder.run(new String[0], new PrintStream(out), new PrintStream(err))).isEqualTo(2);
+    assertThat(BlackBoxDecoder.run(new String[]{file + ".missing"}, new PrintStream(out), new PrintStream(err))).isEqualTo(1);
+  }
+
+  private static String decode(Path file) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BlackBoxDecoder.decode(file, out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  private static void write(BlackBox blackBox, String event) {
+    byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+    blackBox.write(bytes, 0, bytes.length);
+  }
+}
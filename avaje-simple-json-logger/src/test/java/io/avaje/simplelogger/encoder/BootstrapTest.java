@@ -1,6 +1,7 @@
 package io.avaje.simplelogger.encoder;
 
 import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
 
 import java.util.Properties;
 
@@ -75,4 +76,46 @@ class BootstrapTest {
     String value = props.getProperty("log.level.io.banana");
     assertThat(value).isEqualTo("trace");
   }
+
+  @Test
+  void level_when_validIgnoringCase() {
+    Properties props = new Properties();
+    props.setProperty("logger.async.overflowLevel", " Error ");
+
+    assertThat(Bootstrap.level(props, "logger.async.overflowLevel", "warn")).isEqualTo(Level.ERROR);
+  }
+
+  @Test
+  void level_when_unknown_expect_default() {
+    Properties props = new Properties();
+    props.setProperty("logger.async.overflowLevel", "wran");
+
+    assertThat(Bootstrap.level(props, "logger.async.overflowLevel", "warn")).isEqualTo(Level.WARN);
+    assertThat(Bootstrap.level(props, "logger.file.flushLevel", "warn")).isEqualTo(Level.WARN);
+  }
+
+  @Test
+  void numbers_when_invalid_expect_default() {
+    Properties props = new Properties();
+    props.setProperty("logger.async.bufferSize", "8k");
+    props.setProperty("logger.tailSampling.rate", "10%");
+    props.setProperty("logger.file.maxSize", "10 megs");
+
+    assertThat(Bootstrap.intProperty(props, "logger.async.bufferSize", 8192)).isEqualTo(8192);
+    assertThat(Bootstrap.doubleProperty(props, "logger.tailSampling.rate", 0.1)).isEqualTo(0.1);
+    assertThat(Bootstrap.sizeProperty(props, "logger.file.maxSize", "0")).isEqualTo(0L);
+    assertThat(Bootstrap.sizeProperty(props, "logger.batch.maxBytes", "64KB")).isEqualTo(65_536L);
+  }
+
+  @Test
+  void createWriter_when_invalidSettings_expect_defaults() {
+    Properties props = new Properties();
+    props.setProperty("logger.async", "true");
+    props.setProperty("logger.async.overflow", "dropNewst");
+    props.setProperty("logger.async.bufferSize", "lots");
+
+    LogWriter writer = Bootstrap.createWriter(props, "plain");
+    assertThat(writer).isInstanceOf(AsyncLogWriter.class);
+    writer.close(5_000);
+  }
 }
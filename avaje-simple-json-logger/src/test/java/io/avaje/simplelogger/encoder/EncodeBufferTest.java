@@ -0,0 +1,51 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EncodeBufferTest {
+
+  @Test
+  void append_utf8() {
+    String value = "ascii \u00e9 \u4e2d\u6587 \ud83d\ude00 end";
+    EncodeBuffer buffer = new EncodeBuffer(4);
+    buffer.append(value);
+
+    assertThat(buffer.toByteArray()).isEqualTo(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void acquire_reusesThreadBuffer() {
+    EncodeBuffer buffer = EncodeBuffer.acquire();
+    byte[] array = buffer.array();
+    buffer.append("hello");
+    buffer.release();
+
+    EncodeBuffer again = EncodeBuffer.acquire();
+    assertThat(again).isSameAs(buffer);
+    assertThat(again.size()).isEqualTo(0);
+    assertThat(again.array()).isSameAs(array);
+    again.release();
+  }
+
+  @Test
+  void acquire_whenInUse_returnsNewBuffer() {
+    EncodeBuffer buffer = EncodeBuffer.acquire();
+    EncodeBuffer nested = EncodeBuffer.acquire();
+    assertThat(nested).isNotEqualTo(buffer);
+    nested.release();
+    buffer.release();
+  }
+
+  @Test
+  void release_largeBuffer_notRetained() {
+    EncodeBuffer buffer = EncodeBuffer.acquire();
+    buffer.write(new byte[100_000], 0, 100_000);
+    buffer.release();
+
+    assertThat(buffer.array().length).isLessThan(100_000);
+  }
+}
@@ -0,0 +1,89 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanOutSinkTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  private final AtomicInteger encodeCount = new AtomicInteger();
+  private final ByteArrayOutputStream all = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream warn = new ByteArrayOutputStream();
+
+  @Test
+  void levelRoutingWriter_encodesOnce_writesPerDestinationLevel() {
+    LogSink sink = fanOut();
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(countingEncoder(), sink, sink, Level.WARN, 60_000, "test-flush");
+    writer.log(NAME, Level.INFO, "info event", null, null, null);
+    writer.log(NAME, Level.ERROR, "error event", null, null, null);
+    writer.close(5_000);
+
+    assertThat(encodeCount.get()).isEqualTo(2);
+    assertThat(all.toString(StandardCharsets.UTF_8)).contains("info event", "error event");
+    assertThat(warn.toString(StandardCharsets.UTF_8)).contains("error event").doesNotContain("info event");
+  }
+
+  @Test
+  void asyncWriter_levelPassedThroughRingBuffer() {
+    AsyncLogWriter writer = new AsyncLogWriter(countingEncoder(), fanOut(), 16);
+    writer.log(NAME, Level.DEBUG, "debug event", null, null, null);
+    writer.log(NAME, Level.WARN, "warn event", null, null, null);
+    writer.close(5_000);
+
+    assertThat(encodeCount.get()).isEqualTo(2);
+    assertThat(all.toString(StandardCharsets.UTF_8)).contains("debug event", "warn event");
+    assertThat(warn.toString(StandardCharsets.UTF_8)).contains("warn event").doesNotContain("debug event");
+  }
+
+  @Test
+  void close_timeoutPassedToDestinations() {
+    List<Long> timeouts = new ArrayList<>();
+    LogSink sink = new LogSink() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+        timeouts.add(-1L);
+      }
+
+      @Override
+      public void close(long timeoutMillis) {
+        timeouts.add(timeoutMillis);
+      }
+    };
+    new FanOutSink(List.of(new FanOutSink.Destination(sink, Level.TRACE), new FanOutSink.Destination(sink, Level.WARN))).close(200);
+
+    assertThat(timeouts).hasSize(2);
+    assertThat(timeouts).allMatch(timeout -> timeout >= 0 && timeout <= 200);
+  }
+
+  private FanOutSink fanOut() {
+    return new FanOutSink(List.of(
+      new FanOutSink.Destination(new StreamSink(all), Level.TRACE),
+      new FanOutSink.Destination(new StreamSink(warn), Level.WARN)));
+  }
+
+  private LogEncoder countingEncoder() {
+    PlainEncoder encoder = new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+    return (out, loggerName, level, messagePattern, arguments, t, keyValuePairs) -> {
+      encodeCount.incrementAndGet();
+      encoder.encode(out, loggerName, level, messagePattern, arguments, t, keyValuePairs);
+    };
+  }
+}
@@ -0,0 +1,191 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSinkTest {
+
+  // 2024-05-01T23:59:00Z
+  private static final long START = 1714607940000L;
+
+  @Test
+  void write_flush() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("logs/app.log");
+    FileSink sink = new FileSink(file, policy(0, RollingPolicy.Period.NONE, 0), 64);
+    write(sink, "one\n");
+    write(sink, "two\n");
+    assertThat(Files.readString(file)).isEqualTo("");
+
+    sink.flush();
+    assertThat(Files.readString(file)).isEqualTo("one\ntwo\n");
+
+    // larger than the buffer
+    String large = "x".repeat(100) + "\n";
+    write(sink, large);
+    sink.close();
+    assertThat(Files.readString(file)).isEqualTo("one\ntwo\n" + large);
+  }
+
+  @Test
+  void rollBySize_withRetention() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(20, RollingPolicy.Period.NONE, 2), 64, clock::get);
+    for (int i = 0; i < 10; i++) {
+      write(sink, "line-" + i + "\n");
+    }
+    sink.close();
+
+    List<Path> rolled = RollingPolicy.rolledFiles(file);
+    assertThat(rolled).hasSize(2);
+    assertThat(Files.readString(file)).isEqualTo("line-8\nline-9\n");
+    for (Path path : rolled) {
+      assertThat(path.getFileName().toString()).startsWith("app.2024-05-01.");
+      assertThat(Files.size(path)).isLessThanOrEqualTo(20);
+    }
+  }
+
+  @Test
+  void rollByTime() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(0, RollingPolicy.Period.DAILY, 0), 64, clock::get);
+    write(sink, "day1\n");
+    clock.addAndGet(60_000);
+    write(sink, "day2\n");
+    sink.close();
+
+    Path rolled = file.resolveSibling("app.2024-05-01.1.log");
+    assertThat(Files.readString(rolled)).isEqualTo("day1\n");
+    assertThat(Files.readString(file)).isEqualTo("day2\n");
+  }
+
+  @Test
+  void existingFileFromEarlierPeriod_rolledWithItsPeriod() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    Files.writeString(file, "day0\n");
+    // last written on the previous day
+    Files.setLastModifiedTime(file, FileTime.fromMillis(START - 86_400_000));
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(0, RollingPolicy.Period.DAILY, 0), 64, clock::get);
+    write(sink, "day1\n");
+    sink.close();
+
+    assertThat(Files.readString(file.resolveSibling("app.2024-04-30.1.log"))).isEqualTo("day0\n");
+    assertThat(Files.readString(file)).isEqualTo("day1\n");
+  }
+
+  @Test
+  void rollByTime_compressed() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(0, RollingPolicy.Period.DAILY, 0), 64, true, clock::get);
+    write(sink, "day1\n");
+    clock.addAndGet(60_000);
+    write(sink, "day2\n");
+    clock.addAndGet(86_400_000);
+    write(sink, "day3\n");
+    sink.close();
+
+    assertThat(Files.exists(file.resolveSibling("app.2024-05-01.1.log"))).isFalse();
+    assertThat(gunzip(file.resolveSibling("app.2024-05-01.1.log.gz"))).isEqualTo("day1\n");
+    assertThat(gunzip(file.resolveSibling("app.2024-05-02.1.log.gz"))).isEqualTo("day2\n");
+    assertThat(Files.readString(file)).isEqualTo("day3\n");
+    assertThat(RollingPolicy.rolledFiles(file)).hasSize(2);
+  }
+
+  @Test
+  void retention_totalSizeCap() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    RollingPolicy policy = new RollingPolicy(20, RollingPolicy.Period.NONE, ZoneOffset.UTC, 0, 30);
+    FileSink sink = new FileSink(file, policy, 64, clock::get);
+    for (int i = 0; i < 10; i++) {
+      write(sink, "line-" + i + "\n");
+    }
+    sink.close();
+
+    List<Path> rolled = RollingPolicy.rolledFiles(file);
+    assertThat(rolled).hasSize(2);
+    long total = 0;
+    for (Path path : rolled) {
+      total += Files.size(path);
+    }
+    assertThat(total).isLessThanOrEqualTo(30);
+  }
+
+  @Test
+  void retention_siblingFilesNotDeleted() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    Path properties = Files.writeString(file.resolveSibling("app.properties"), "a=b\n");
+    Path jar = Files.writeString(file.resolveSibling("app.jar"), "jar");
+    Path other = Files.writeString(file.resolveSibling("app.2024-05-01.1.txt"), "other");
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(20, RollingPolicy.Period.NONE, 1), 64, clock::get);
+    for (int i = 0; i < 10; i++) {
+      write(sink, "line-" + i + "\n");
+    }
+    sink.close();
+
+    assertThat(RollingPolicy.rolledFiles(file)).hasSize(1);
+    assertThat(Files.readString(properties)).isEqualTo("a=b\n");
+    assertThat(Files.exists(jar)).isTrue();
+    assertThat(Files.exists(other)).isTrue();
+  }
+
+  @Test
+  void compress_existingOnStartup_onlyRolledFiles() throws IOException {
+    Path file = Files.createTempDirectory("filesink").resolve("app.log");
+    Path yaml = Files.writeString(file.resolveSibling("app.yaml"), "a: b\n");
+    Path jar = Files.writeString(file.resolveSibling("app.jar"), "jar");
+    Path orphan = Files.writeString(file.resolveSibling("app.2024-04-29.1.log.gz.tmp"), "partial");
+    Path rolled = Files.writeString(file.resolveSibling("app.2024-04-30.1.log"), "day0\n");
+    AtomicLong clock = new AtomicLong(START);
+    FileSink sink = new FileSink(file, policy(0, RollingPolicy.Period.DAILY, 0), 64, true, clock::get);
+    write(sink, "day1\n");
+    sink.close();
+
+    assertThat(Files.readString(yaml)).isEqualTo("a: b\n");
+    assertThat(Files.exists(jar)).isTrue();
+    assertThat(Files.exists(orphan)).isFalse();
+    assertThat(Files.exists(rolled)).isFalse();
+    assertThat(gunzip(file.resolveSibling("app.2024-04-30.1.log.gz"))).isEqualTo("day0\n");
+  }
+
+  @Test
+  void parseSize() {
+    assertThat(RollingPolicy.parseSize(null)).isEqualTo(0L);
+    assertThat(RollingPolicy.parseSize("512")).isEqualTo(512L);
+    assertThat(RollingPolicy.parseSize("512b")).isEqualTo(512L);
+    assertThat(RollingPolicy.parseSize("10KB")).isEqualTo(10_240L);
+    assertThat(RollingPolicy.parseSize(" 50mb ")).isEqualTo(50L * 1024 * 1024);
+    assertThat(RollingPolicy.parseSize("1GB")).isEqualTo(1024L * 1024 * 1024);
+  }
+
+  private static RollingPolicy policy(long maxSize, RollingPolicy.Period period, int maxHistory) {
+    return new RollingPolicy(maxSize, period, ZoneOffset.UTC, maxHistory);
+  }
+
+  private static String gunzip(Path path) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static void write(FileSink sink, String line) {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    sink.write(bytes, 0, bytes.length);
+  }
+}
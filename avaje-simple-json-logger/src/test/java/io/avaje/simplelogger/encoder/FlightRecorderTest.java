@@ -0,0 +1,176 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.slf4j.spi.LocationAwareLogger.INFO_INT;
+
+class FlightRecorderTest {
+
+  @Test
+  void error_emitsRecordedEventsOfThread() {
+    RecordingWriter writer = new RecordingWriter();
+    FlightRecorder recorder = new FlightRecorder(new NoopTraceContext(), Level.DEBUG, 3, 10);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    assertThat(logger.isDebugEnabled()).isTrue();
+    assertThat(logger.isTraceEnabled()).isFalse();
+    for (int i = 0; i < 5; i++) {
+      logger.debug("debug {}", i);
+    }
+    logger.trace("not recorded");
+    logger.info("info");
+    assertThat(writer.messages).containsExactly("info");
+
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("info", "debug {}", "debug {}", "debug {}", "error");
+    assertThat(writer.arguments.get(1)).containsExactly(2);
+    assertThat(writer.arguments.get(3)).containsExactly(4);
+    assertThat(writer.keyValuePairs.get(1).get(0).key).isEqualTo(FlightRecorder.RECORDED_AT);
+    assertThat(writer.keyValuePairs.get(4)).isNull();
+
+    // the recorded events are only emitted once
+    logger.error("second error");
+    assertThat(writer.messages).hasSize(6);
+  }
+
+  @Test
+  void error_emitsRecordedEventsOfTraceFromOtherThread() throws InterruptedException {
+    RecordingWriter writer = new RecordingWriter();
+    FixedTraceContext traceContext = new FixedTraceContext();
+    FlightRecorder recorder = new FlightRecorder(traceContext, Level.DEBUG, 10, 10);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    traceContext.traceId = "trace-1";
+    Thread thread = new Thread(() -> logger.debug("in trace-1"));
+    thread.start();
+    thread.join();
+
+    traceContext.traceId = "trace-2";
+    logger.debug("in trace-2");
+    logger.error("error in trace-2");
+    assertThat(writer.messages).containsExactly("in trace-2", "error in trace-2");
+
+    traceContext.traceId = "trace-1";
+    logger.error("error in trace-1");
+    assertThat(writer.messages).containsExactly("in trace-2", "error in trace-2", "in trace-1", "error in trace-1");
+  }
+
+  @Test
+  void maxTraces_evictsOldest() {
+    RecordingWriter writer = new RecordingWriter();
+    FixedTraceContext traceContext = new FixedTraceContext();
+    FlightRecorder recorder = new FlightRecorder(traceContext, Level.DEBUG, 10, 2);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    for (int i = 0; i < 3; i++) {
+      traceContext.traceId = "trace-" + i;
+      logger.debug("debug");
+    }
+    traceContext.traceId = "trace-0";
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("error");
+  }
+
+  @Test
+  void maxTraces_dumpedTraceRecreated_notEvictedByStaleEntry() {
+    RecordingWriter writer = new RecordingWriter();
+    FixedTraceContext traceContext = new FixedTraceContext();
+    FlightRecorder recorder = new FlightRecorder(traceContext, Level.DEBUG, 10, 2);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    traceContext.traceId = "trace-1";
+    logger.debug("first in trace-1");
+    logger.error("error in trace-1");
+    traceContext.traceId = "trace-2";
+    logger.debug("in trace-2");
+    traceContext.traceId = "trace-1";
+    logger.debug("second in trace-1");
+    traceContext.traceId = "trace-3";
+    logger.debug("in trace-3");
+
+    traceContext.traceId = "trace-1";
+    logger.error("second error in trace-1");
+    assertThat(writer.messages).containsExactly("first in trace-1", "error in trace-1", "second in trace-1", "second error in trace-1");
+  }
+
+  @Test
+  void maxAge_oldEventsNotEmitted() throws InterruptedException {
+    RecordingWriter writer = new RecordingWriter();
+    FlightRecorder recorder = new FlightRecorder(new NoopTraceContext(), Level.DEBUG, 10, 10, 50);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    // an earlier request on the same (pooled) thread
+    logger.debug("old request");
+    Thread.sleep(100);
+    logger.debug("current request");
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("current request", "error");
+  }
+
+  @Test
+  void maxAge_oldEventsEvictedOnRecord_argumentsReleased() throws InterruptedException {
+    RecordingWriter writer = new RecordingWriter();
+    FlightRecorder recorder = new FlightRecorder(new NoopTraceContext(), Level.DEBUG, 10, 10, 50);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, null);
+
+    Object argument = new Object();
+    WeakReference<Object> reference = new WeakReference<>(argument);
+    logger.debug("old request {}", argument);
+    argument = null;
+    Thread.sleep(100);
+    logger.debug("current request");
+
+    for (int i = 0; i < 10 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+  }
+
+  static final class FixedTraceContext implements TraceContext {
+
+    volatile String traceId;
+    volatile boolean sampled;
+
+    @Override
+    public String traceId() {
+      return traceId;
+    }
+
+    @Override
+    public String spanId() {
+      return null;
+    }
+
+    @Override
+    public boolean sampled() {
+      return traceId != null && sampled;
+    }
+
+    @Override
+    public boolean notSampled() {
+      return traceId != null && !sampled;
+    }
+  }
+
+  static final class RecordingWriter implements LogWriter {
+
+    final List<String> messages = new ArrayList<>();
+    final List<Object[]> arguments = new ArrayList<>();
+    final List<List<KeyValuePair>> keyValuePairs = new ArrayList<>();
+
+    @Override
+    public synchronized void log(LoggerName loggerName, Level level, String messagePattern, Object[] args, Throwable t, List<KeyValuePair> pairs) {
+      messages.add(messagePattern);
+      arguments.add(args);
+      keyValuePairs.add(pairs);
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package io.avaje.simplelogger.encoder;
 
-import io.avaje.json.stream.JsonStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.MDC;
@@ -32,7 +31,7 @@ class FluentKeyValueTest {
   @Test
   void simpleLoggerFluent_addKeyValue_passesStructuredPairsToWriter() {
     CapturingLogWriter writer = new CapturingLogWriter();
-    SimpleLogger logger = new SimpleLogger(writer, "test.logger.Name", "Name", INFO_INT);
+    SimpleLogger logger = new SimpleLogger(writer, "test.logger.Name", new LoggerName("Name"), INFO_INT);
 
     logger.atInfo()
       .addKeyValue("orderId", 42)
@@ -40,7 +39,7 @@ class FluentKeyValueTest {
       .log("hello {}", "world");
 
     assertThat(writer.level).isEqualTo(Level.INFO);
-    assertThat(writer.loggerName).isEqualTo("Name");
+    assertThat(writer.loggerName.name()).isEqualTo("Name");
     assertThat(writer.messagePattern).isEqualTo("hello {}");
     assertThat(writer.arguments).containsExactly("world");
     assertThat(writer.throwable).isNull();
@@ -63,7 +62,7 @@ class FluentKeyValueTest {
     );
 
     String json = new String(
-      encoder.encode("test.Logger", Level.INFO, "hello {}", new Object[]{"world"}, null, keyValuePairs),
+      encoder.encode(encoder.loggerName("test.Logger"), Level.INFO, "hello {}", new Object[]{"world"}, null, keyValuePairs),
       StandardCharsets.UTF_8
     );
 
@@ -112,18 +111,15 @@ class FluentKeyValueTest {
 
   private JsonEncoder buildEncoder() {
     String[] propertyNames = JsonEncoderBuilder.basePropertyNames(null);
-    JsonStream json = JsonStream.builder().build();
     DateTimeFormatter formatter = TimeZoneUtils.jsonFormatter(null, TimeZone.getDefault().toZoneId());
     StackHasher stackHasher = new StackHasher(StackElementFilter.builder().allFilters().build());
     return new JsonEncoder(
       propertyNames,
-      json,
-      null,
-      null,
+      JsonEncoderBuilder.jsonPrefix(propertyNames, null, null),
+      JsonEncoderBuilder.jsonCustomFields(new HashMap<>()),
       stackHasher,
       formatter,
       true,
-      new HashMap<>(),
       new ThrowableConverter(),
       new NoopTraceContext()
     );
@@ -134,7 +130,7 @@ class FluentKeyValueTest {
     PlainLogWriter writer = new PlainLogWriter(new PrintStream(output), DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
 
     writer.log(
-      "test.Logger",
+      new LoggerName("test.Logger"),
       Level.INFO,
       "hello {}",
       new Object[]{"world"},
@@ -146,7 +142,7 @@ class FluentKeyValueTest {
   }
 
   private static final class CapturingLogWriter implements LogWriter {
-    private String loggerName;
+    private LoggerName loggerName;
     private Level level;
     private String messagePattern;
     private Object[] arguments;
@@ -154,7 +150,7 @@ class FluentKeyValueTest {
     private List<KeyValuePair> keyValuePairs;
 
     @Override
-    public void log(String loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
+    public void log(LoggerName loggerName, Level level, String messagePattern, Object[] arguments, Throwable t, List<KeyValuePair> keyValuePairs) {
       this.loggerName = loggerName;
       this.level = level;
       this.messagePattern = messagePattern;
@@ -0,0 +1,189 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupCommitLogWriterTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  @Test
+  void log_singleThread_writesEachEvent() {
+    CountingSink sink = new CountingSink(0);
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 1024, 0);
+    writer.log(NAME, Level.INFO, "one", null, null, null);
+    writer.log(NAME, Level.INFO, "two", null, null, null);
+
+    assertThat(sink.writes.get()).isEqualTo(2);
+    assertThat(sink.lines()).hasSize(2);
+  }
+
+  @Test
+  void log_multipleThreads_coalescesIntoFewerWrites() throws InterruptedException {
+    // a slow sink such that events accumulate while the leader is writing
+    CountingSink sink = new CountingSink(1);
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 64 * 1024, 0);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final int threadNumber = i;
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 200; j++) {
+          writer.log(NAME, Level.INFO, "thread {} event {}", new Object[]{threadNumber, j}, null, null);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    List<String> lines = sink.lines();
+    assertThat(lines).hasSize(1600);
+    assertThat(lines).allMatch(line -> line.contains("INFO test.Logger - thread "));
+    assertThat(sink.writes.get()).isLessThan(1600);
+  }
+
+  @Test
+  void log_maxDelay_writesWhenBatchFull() {
+    CountingSink sink = new CountingSink(0);
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 10, TimeUnit.SECONDS.toNanos(30));
+
+    // the batch is already full so the leader does not wait
+    writer.log(NAME, Level.INFO, "larger than the max batch size", null, null, null);
+    assertThat(sink.writes.get()).isEqualTo(1);
+  }
+
+  @Test
+  void log_maxDelay_waitsForMoreEvents() throws InterruptedException {
+    CountingSink sink = new CountingSink(0);
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 64 * 1024, TimeUnit.MILLISECONDS.toNanos(200));
+
+    Thread leader = new Thread(() -> writer.log(NAME, Level.INFO, "first", null, null, null));
+    leader.start();
+    Thread.sleep(50);
+    writer.log(NAME, Level.INFO, "second", null, null, null);
+    leader.join();
+
+    assertThat(sink.writes.get()).isEqualTo(1);
+    assertThat(sink.lines()).hasSize(2);
+  }
+
+  @Test
+  void flush_wakesLingeringLeader() throws InterruptedException {
+    CountingSink sink = new CountingSink(0);
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 64 * 1024, TimeUnit.SECONDS.toNanos(30));
+
+    Thread leader = new Thread(() -> writer.log(NAME, Level.INFO, "first", null, null, null));
+    leader.start();
+    Thread.sleep(50);
+    writer.flush(5_000);
+
+    assertThat(sink.lines()).hasSize(1);
+    leader.join(5_000);
+    assertThat(leader.isAlive()).isFalse();
+  }
+
+  @Test
+  void log_leaderWritesOnlyItsBatch_nextBatchWrittenByItsOwner() throws InterruptedException {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> writers = new CopyOnWriteArrayList<>();
+    LogSink sink = new LogSink() {
+      @Override
+      public void write(byte[] bytes, int offset, int length) {
+        writers.add(Thread.currentThread().getName());
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    GroupCommitLogWriter writer = new GroupCommitLogWriter(encoder(), sink, 64 * 1024, 0);
+
+    Thread first = new Thread(() -> writer.log(NAME, Level.INFO, "first", null, null, null), "first");
+    first.start();
+    entered.await();
+    Thread second = new Thread(() -> writer.log(NAME, Level.INFO, "second", null, null, null), "second");
+    second.start();
+    while (second.getState() != Thread.State.WAITING && second.isAlive()) {
+      Thread.sleep(1);
+    }
+    // appended to the batch owned by the second thread
+    Thread third = new Thread(() -> writer.log(NAME, Level.INFO, "third", null, null, null), "third");
+    third.start();
+    third.join(5_000);
+    assertThat(third.isAlive()).isFalse();
+
+    release.countDown();
+    first.join(5_000);
+    second.join(5_000);
+    assertThat(writers).containsExactly("first", "second");
+  }
+
+  private static PlainEncoder encoder() {
+    return new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+  }
+
+  static final class CountingSink implements LogSink {
+
+    final AtomicInteger writes = new AtomicInteger();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final long sleepMillis;
+
+    CountingSink(long sleepMillis) {
+      this.sleepMillis = sleepMillis;
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+      writes.incrementAndGet();
+      output.write(bytes, offset, length);
+      if (sleepMillis > 0) {
+        try {
+          Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+      // do nothing
+    }
+
+    @Override
+    public void close() {
+      // do nothing
+    }
+
+    synchronized List<String> lines() {
+      return output.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    }
+  }
+}
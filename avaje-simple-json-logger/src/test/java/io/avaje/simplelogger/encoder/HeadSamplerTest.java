@@ -0,0 +1,120 @@
+package io.avaje.simplelogger.encoder;
+
+import io.avaje.simplelogger.encoder.FlightRecorderTest.FixedTraceContext;
+import io.avaje.simplelogger.encoder.FlightRecorderTest.RecordingWriter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.slf4j.spi.LocationAwareLogger.DEBUG_INT;
+import static org.slf4j.spi.LocationAwareLogger.INFO_INT;
+
+class HeadSamplerTest {
+
+  private final RecordingWriter writer = new RecordingWriter();
+  private final FixedTraceContext traceContext = new FixedTraceContext();
+  private final HeadSampler sampler = new HeadSampler(traceContext, Level.INFO);
+
+  @Test
+  void notSampledTrace_dropsEventsAtOrBelowLevel() {
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), DEBUG_INT, null, sampler);
+    traceContext.traceId = "trace-1";
+
+    assertThat(logger.isDebugEnabled()).isFalse();
+    assertThat(logger.isInfoEnabled()).isFalse();
+    assertThat(logger.isWarnEnabled()).isTrue();
+    logger.debug("debug");
+    logger.info("info");
+    logger.warn("warn");
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("warn", "error");
+  }
+
+  @Test
+  void sampledTrace_writesEvents() {
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), DEBUG_INT, null, sampler);
+    traceContext.traceId = "trace-1";
+    traceContext.sampled = true;
+
+    assertThat(logger.isDebugEnabled()).isTrue();
+    logger.debug("debug");
+    logger.info("info");
+    assertThat(writer.messages).containsExactly("debug", "info");
+  }
+
+  @Test
+  void noTrace_writesEvents() {
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), DEBUG_INT, null, sampler);
+
+    assertThat(logger.isDebugEnabled()).isTrue();
+    logger.info("info");
+    assertThat(writer.messages).containsExactly("info");
+  }
+
+  @Test
+  void notSampledTrace_withFlightRecorder_droppedEventsNotRecorded() {
+    FlightRecorder recorder = new FlightRecorder(traceContext, Level.DEBUG, 10, 10);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, sampler);
+    traceContext.traceId = "trace-1";
+
+    assertThat(logger.isDebugEnabled()).isFalse();
+    assertThat(logger.isInfoEnabled()).isFalse();
+    logger.debug("debug");
+    logger.info("info");
+    assertThat(writer.messages).isEmpty();
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("error");
+  }
+
+  @Test
+  void sampledTrace_withFlightRecorder_recordsEventsBelowLevel() {
+    FlightRecorder recorder = new FlightRecorder(traceContext, Level.DEBUG, 10, 10);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, sampler);
+    traceContext.traceId = "trace-1";
+    traceContext.sampled = true;
+
+    logger.debug("debug");
+    logger.info("info");
+    assertThat(writer.messages).containsExactly("info");
+    logger.error("error");
+    assertThat(writer.messages).containsExactly("info", "debug", "error");
+  }
+
+  @Test
+  void log_samplerEvaluatedOncePerEvent() {
+    CountingTraceContext counting = new CountingTraceContext();
+    HeadSampler countingSampler = new HeadSampler(counting, Level.INFO);
+    FlightRecorder recorder = new FlightRecorder(counting, Level.DEBUG, 10, 10);
+    SimpleLogger logger = new SimpleLogger(writer, "test.Name", new LoggerName("Name"), INFO_INT, recorder, countingSampler);
+
+    logger.info("info");
+    logger.debug("debug {}", 1);
+    assertThat(counting.notSampledCalls).isEqualTo(2);
+  }
+
+  static final class CountingTraceContext implements TraceContext {
+
+    int notSampledCalls;
+
+    @Override
+    public String traceId() {
+      return null;
+    }
+
+    @Override
+    public String spanId() {
+      return null;
+    }
+
+    @Override
+    public boolean sampled() {
+      return false;
+    }
+
+    @Override
+    public boolean notSampled() {
+      notSampledCalls++;
+      return false;
+    }
+  }
+}
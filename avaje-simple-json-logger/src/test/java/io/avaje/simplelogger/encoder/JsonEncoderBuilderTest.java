@@ -1,8 +1,14 @@
 package io.avaje.simplelogger.encoder;
 
 import org.junit.jupiter.api.Test;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.event.Level;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -54,4 +60,40 @@ class JsonEncoderBuilderTest {
     String[] keys = JsonEncoderBuilder.basePropertyNames("camel");
     assertThat(keys).isEqualTo(new String[]{"component", "env", "timestamp", "level", "loggerName", "message", "thread", "exceptionType", "exceptionMessage", "exceptionStackhash", "exceptionStacktrace", "traceId", "spanId"});
   }
+
+  @Test
+  void jsonPrefix() {
+    byte[] prefix = JsonEncoderBuilder.jsonPrefix(baseKeys, "my-\"app\"", "dev");
+    assertThat(new String(prefix, StandardCharsets.UTF_8))
+      .isEqualTo("{\"component\":\"my-\\\"app\\\"\",\"env\":\"dev\",\"timestamp\":");
+  }
+
+  @Test
+  void jsonCustomFields() {
+    Map<String, String> customFields = new LinkedHashMap<>();
+    customFields.put("region", "\"ap-1\"");
+    customFields.put("replicas", "3");
+    byte[] suffix = JsonEncoderBuilder.jsonCustomFields(customFields);
+    assertThat(new String(suffix, StandardCharsets.UTF_8)).isEqualTo(",\"region\":\"ap-1\",\"replicas\":3");
+    assertThat(JsonEncoderBuilder.jsonCustomFields(Map.of()).length).isEqualTo(0);
+  }
+
+  @Test
+  void build_customFieldsAfterKeyValues() {
+    JsonEncoder encoder = new JsonEncoderBuilder()
+      .customFields("{\"region\":\"ap-1\"}")
+      .build();
+    EncodeBuffer buffer = new EncodeBuffer(512);
+    encoder.encode(buffer, new LoggerName("test.Name"), Level.INFO, "hi", null, null,
+      List.of(new KeyValuePair("order", 42)));
+    String json = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(json.indexOf("\"timestamp\"")).isLessThan(json.indexOf("\"order\""));
+    assertThat(json).contains(",\"order\":42,\"region\":\"ap-1\"");
+  }
+
+  @Test
+  void jsonPrefix_noComponentOrEnv() {
+    byte[] prefix = JsonEncoderBuilder.jsonPrefix(baseKeys, null, null);
+    assertThat(new String(prefix, StandardCharsets.UTF_8)).isEqualTo("{\"timestamp\":");
+  }
 }
@@ -1,6 +1,5 @@
 package io.avaje.simplelogger.encoder;
 
-import io.avaje.json.stream.JsonStream;
 import io.opentelemetry.api.trace.*;
 import io.opentelemetry.context.Scope;
 import org.junit.jupiter.api.AfterEach;
@@ -27,14 +26,13 @@ class JsonEncoderTraceTest {
 
   private JsonEncoder buildEncoder(TraceContext traceContext) {
     String[] propertyNames = JsonEncoderBuilder.basePropertyNames(null);
-    JsonStream json = JsonStream.builder().build();
     DateTimeFormatter formatter = TimeZoneUtils.jsonFormatter(null, TimeZone.getDefault().toZoneId());
     StackHasher stackHasher = new StackHasher(StackElementFilter.builder().allFilters().build());
-    return new JsonEncoder(propertyNames, json, null, null, stackHasher, formatter, true, new HashMap<>(), new ThrowableConverter(), traceContext);
+    return new JsonEncoder(propertyNames, JsonEncoderBuilder.jsonPrefix(propertyNames, null, null), JsonEncoderBuilder.jsonCustomFields(new HashMap<>()), stackHasher, formatter, true, new ThrowableConverter(), traceContext);
   }
 
   private String encode(JsonEncoder encoder, String message, Throwable t) {
-    byte[] bytes = encoder.encode("test.Logger", Level.INFO, message, null, t, null);
+    byte[] bytes = encoder.encode(encoder.loggerName("test.Logger"), Level.INFO, message, null, t, null);
     return new String(bytes, StandardCharsets.UTF_8);
   }
 
@@ -111,7 +109,7 @@ class JsonEncoderTraceTest {
     Span span = Span.wrap(spanContext);
 
     try (Scope ignored = span.makeCurrent()) {
-      byte[] bytes = encoder.encode("test.Logger", Level.INFO, "check", null, null, null);
+      byte[] bytes = encoder.encode(encoder.loggerName("test.Logger"), Level.INFO, "check", null, null, null);
       String json = new String(bytes, StandardCharsets.UTF_8);
       assertThat(json).contains("\"trace_id\":\"" + TRACE_ID + "\"");
     }
@@ -0,0 +1,64 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonMessageFormatterTest {
+
+  @Test
+  void format_sameAsMessageFormatter() {
+    assertSame("no args", null);
+    assertSame("hello {}", new Object[]{"world"});
+    assertSame("{} and {} and {}", new Object[]{1, 2L});
+    assertSame("{} {}", new Object[]{null, 3.5d});
+    assertSame("extra {}", new Object[]{"a", "b"});
+    assertSame("escaped \\{} and {}", new Object[]{"x"});
+    assertSame("double escaped \\\\{} end", new Object[]{"x"});
+    assertSame("{}{}", new Object[]{"a", "b"});
+    assertSame("no placeholder", new Object[]{"a"});
+    assertSame("arrays {} {} {}", new Object[]{new int[]{1, 2}, new String[]{"a", "b"}, new boolean[]{true}});
+    assertSame("nested {}", new Object[]{new Object[]{1, new long[]{-5, Long.MIN_VALUE}}});
+    assertSame("utf8 {}", new Object[]{"\u00e9 \u4e2d \ud83d\ude00"});
+  }
+
+  @Test
+  void format_selfReferencingArray() {
+    Object[] array = new Object[2];
+    array[0] = "a";
+    array[1] = array;
+    assertSame("cycle {}", new Object[]{array});
+  }
+
+  @Test
+  void format_escapesJson() {
+    assertThat(format("say \"{}\"", new Object[]{"a\\b"})).isEqualTo("say \\\"a\\\\b\\\"");
+    assertThat(format("line1\n{}", new Object[]{"\tx\r\u0001"})).isEqualTo("line1\\n\\tx\\r\\u0001");
+  }
+
+  @Test
+  void format_failedToString() {
+    Object bad = new Object() {
+      @Override
+      public String toString() {
+        throw new IllegalStateException("bad");
+      }
+    };
+    assertSame("value {}", new Object[]{bad});
+  }
+
+  private static void assertSame(String pattern, Object[] args) {
+    EncodeBuffer expected = new EncodeBuffer();
+    expected.appendJsonEscaped(MessageFormatter.basicArrayFormat(pattern, args));
+    assertThat(format(pattern, args)).isEqualTo(new String(expected.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static String format(String pattern, Object[] args) {
+    EncodeBuffer buffer = new EncodeBuffer();
+    JsonMessageFormatter.format(buffer, pattern, args);
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,120 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LevelRoutingLogWriterTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  @Test
+  void sameSink_urgentFlushesBufferedEventsInOrder() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    LogSink sink = new StreamSink(new BufferedOutputStream(output, 1024));
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(encoder(), sink, sink, Level.WARN, 60_000, "test-flush");
+
+    writer.log(NAME, Level.INFO, "info event", null, null, null);
+    writer.log(NAME, Level.DEBUG, "debug event", null, null, null);
+    assertThat(output.size()).isEqualTo(0);
+
+    writer.log(NAME, Level.ERROR, "error event", null, null, null);
+    String content = output.toString(StandardCharsets.UTF_8);
+    assertThat(content.indexOf("info event")).isLessThan(content.indexOf("debug event"));
+    assertThat(content.indexOf("debug event")).isLessThan(content.indexOf("error event"));
+    writer.close(5_000);
+  }
+
+  @Test
+  void separateUrgentSink() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    LogSink sink = new StreamSink(new BufferedOutputStream(output, 1024));
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(encoder(), sink, new StreamSink(errors), Level.WARN, 60_000, "test-flush");
+
+    writer.log(NAME, Level.INFO, "info event", null, null, null);
+    writer.log(NAME, Level.WARN, "warn event", null, null, null);
+    assertThat(errors.toString(StandardCharsets.UTF_8)).contains("warn event").doesNotContain("info event");
+    assertThat(output.size()).isEqualTo(0);
+
+    writer.flush(5_000);
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("info event").doesNotContain("warn event");
+    writer.close(5_000);
+  }
+
+  @Test
+  void bufferedEvents_flushedPeriodically() throws InterruptedException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    LogSink sink = new StreamSink(new BufferedOutputStream(output, 1024));
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(encoder(), sink, sink, Level.WARN, 10, "test-flush");
+
+    writer.log(NAME, Level.INFO, "info event", null, null, null);
+    for (int i = 0; i < 100 && output.size() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(output.toString(StandardCharsets.UTF_8)).contains("info event");
+    writer.close(5_000);
+  }
+
+  @Test
+  void sameSink_belowFlushLevel_notFlushedPerEvent() {
+    CountingSink sink = new CountingSink();
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(encoder(), sink, sink, Level.WARN, 60_000, "test-flush");
+    for (int i = 0; i < 100; i++) {
+      writer.log(NAME, Level.INFO, "event {}", new Object[]{i}, null, null);
+    }
+    assertThat(sink.writes.get()).isEqualTo(100);
+    assertThat(sink.flushes.get()).isEqualTo(0);
+
+    writer.log(NAME, Level.ERROR, "error", null, null, null);
+    assertThat(sink.flushes.get()).isEqualTo(1);
+    writer.close(5_000);
+  }
+
+  @Test
+  void close_joinsFlushThread() {
+    CountingSink sink = new CountingSink();
+    LevelRoutingLogWriter writer = new LevelRoutingLogWriter(encoder(), sink, sink, Level.WARN, 10, "test-routing-flush");
+    Thread flushThread = Thread.getAllStackTraces().keySet().stream()
+      .filter(thread -> thread.getName().equals("test-routing-flush"))
+      .findFirst()
+      .orElseThrow();
+
+    writer.close(5_000);
+    assertThat(flushThread.isAlive()).isFalse();
+    assertThat(sink.closed.get()).isEqualTo(1);
+  }
+
+  private static final class CountingSink implements LogSink {
+
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicInteger flushes = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      writes.incrementAndGet();
+    }
+
+    @Override
+    public void flush() {
+      flushes.incrementAndGet();
+    }
+
+    @Override
+    public void close() {
+      closed.incrementAndGet();
+    }
+  }
+
+  private static PlainEncoder encoder() {
+    return new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+  }
+}
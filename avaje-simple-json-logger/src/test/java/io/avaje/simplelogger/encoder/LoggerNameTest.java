@@ -0,0 +1,30 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggerNameTest {
+
+  @Test
+  void encodedForms() {
+    LoggerName name = new LoggerName("o.e.My\"Caf\u00e9\"");
+
+    assertThat(name.name()).isEqualTo("o.e.My\"Caf\u00e9\"");
+    assertThat(new String(name.utf8(), StandardCharsets.UTF_8)).isEqualTo("o.e.My\"Caf\u00e9\"");
+    assertThat(new String(name.jsonValue(), StandardCharsets.UTF_8)).isEqualTo("\"o.e.My\\\"Caf\u00e9\\\"\"");
+    assertThat(name.jsonMember(JsonEncoder.jsonName("logger_name"))).isNull();
+  }
+
+  @Test
+  void jsonMember() {
+    byte[] propertyName = JsonEncoder.jsonName("logger");
+    LoggerName name = new LoggerName("o.e.Foo", propertyName);
+
+    assertThat(new String(name.jsonMember(propertyName), StandardCharsets.UTF_8)).isEqualTo(",\"logger\":\"o.e.Foo\"");
+    // encoded for a different property name
+    assertThat(name.jsonMember(JsonEncoder.jsonName("logger"))).isNull();
+  }
+}
@@ -0,0 +1,102 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFileSinkTest {
+
+  // 2024-05-01T23:59:00Z
+  private static final long START = 1714607940000L;
+
+  @Test
+  void write_close_truncates() throws IOException {
+    Path file = Files.createTempDirectory("mappedsink").resolve("logs/app.log");
+    MappedFileSink sink = new MappedFileSink(file, policy(RollingPolicy.Period.NONE, 0), 1024, false);
+    write(sink, "one\n");
+    write(sink, "two\n");
+    assertThat(Files.size(file)).isEqualTo(1024L);
+
+    sink.close();
+    assertThat(Files.readString(file)).isEqualTo("one\ntwo\n");
+  }
+
+  @Test
+  void reopen_appendsAfterExistingData() throws IOException {
+    Path file = Files.createTempDirectory("mappedsink").resolve("app.log");
+    MappedFileSink sink = new MappedFileSink(file, policy(RollingPolicy.Period.NONE, 0), 1024, false);
+    write(sink, "one\n");
+    // not closed, as if the JVM was killed leaving the zero tail
+
+    MappedFileSink reopened = new MappedFileSink(file, policy(RollingPolicy.Period.NONE, 0), 1024, false);
+    write(reopened, "two\n");
+    reopened.close();
+    assertThat(Files.readString(file)).isEqualTo("one\ntwo\n");
+  }
+
+  @Test
+  void rollWhenSegmentFull() throws IOException {
+    Path file = Files.createTempDirectory("mappedsink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    MappedFileSink sink = new MappedFileSink(file, policy(RollingPolicy.Period.NONE, 2), 20, false, clock::get);
+    for (int i = 0; i < 10; i++) {
+      write(sink, "line-" + i + "\n");
+    }
+    // larger than the segment
+    String large = "x".repeat(30) + "\n";
+    write(sink, large);
+    sink.close();
+
+    List<Path> rolled = RollingPolicy.rolledFiles(file);
+    assertThat(rolled).hasSize(2);
+    assertThat(Files.readString(rolled.get(1))).isEqualTo("line-8\nline-9\n");
+    assertThat(Files.readString(file)).isEqualTo(large);
+  }
+
+  @Test
+  void rollByTime() throws IOException {
+    Path file = Files.createTempDirectory("mappedsink").resolve("app.log");
+    AtomicLong clock = new AtomicLong(START);
+    MappedFileSink sink = new MappedFileSink(file, policy(RollingPolicy.Period.DAILY, 0), 1024, false, clock::get);
+    write(sink, "day1\n");
+    clock.addAndGet(60_000);
+    write(sink, "day2\n");
+    sink.close();
+
+    assertThat(Files.readString(file.resolveSibling("app.2024-05-01.1.log"))).isEqualTo("day1\n");
+    assertThat(Files.readString(file)).isEqualTo("day2\n");
+  }
+
+  @Test
+  void existingFileFromEarlierPeriod_rolledWithItsPeriod() throws IOException {
+    Path file = Files.createTempDirectory("mappedsink").resolve("app.log");
+    Files.writeString(file, "day0\n");
+    // last written on the previous day
+    Files.setLastModifiedTime(file, FileTime.fromMillis(START - 86_400_000));
+    AtomicLong clock = new AtomicLong(START);
+    MappedFileSink sink = new MappedFileSink(file, policy(RollingPolicy.Period.DAILY, 0), 1024, false, clock::get);
+    write(sink, "day1\n");
+    sink.close();
+
+    assertThat(Files.readString(file.resolveSibling("app.2024-04-30.1.log"))).isEqualTo("day0\n");
+    assertThat(Files.readString(file)).isEqualTo("day1\n");
+  }
+
+  private static RollingPolicy policy(RollingPolicy.Period period, int maxHistory) {
+    return new RollingPolicy(0, period, ZoneOffset.UTC, maxHistory);
+  }
+
+  private static void write(MappedFileSink sink, String line) {
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    sink.write(bytes, 0, bytes.length);
+  }
+}
@@ -0,0 +1,35 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferTest {
+
+  @Test
+  void drainTo_largeEvents_notRetained() {
+    RingBuffer ringBuffer = new RingBuffer(4);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StreamSink sink = new StreamSink(output);
+    byte[] large = new byte[64 * 1024];
+    for (int i = 0; i < 4; i++) {
+      assertThat(ringBuffer.offer(large, 0, large.length, 0)).isTrue();
+    }
+    assertThat(ringBuffer.drainTo(sink)).isEqualTo(4);
+
+    assertThat(output.size()).isEqualTo(4 * large.length);
+    assertThat(ringBuffer.retainedBytes() <= 5L * RingBuffer.MAX_RETAINED).isTrue();
+  }
+
+  @Test
+  void dropOldest_largeEvent_notRetained() {
+    RingBuffer ringBuffer = new RingBuffer(2);
+    byte[] large = new byte[64 * 1024];
+    ringBuffer.offer(large, 0, large.length, 3);
+
+    assertThat(ringBuffer.dropOldest()).isEqualTo(3);
+    assertThat(ringBuffer.retainedBytes()).isEqualTo(0L);
+  }
+}
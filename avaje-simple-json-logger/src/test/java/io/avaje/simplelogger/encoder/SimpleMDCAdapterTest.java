@@ -0,0 +1,124 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimpleMDCAdapterTest {
+
+  private final SimpleMDCAdapter adapter = new SimpleMDCAdapter();
+
+  @Test
+  void putGetRemove() {
+    assertThat(adapter.get("a")).isNull();
+    assertThat(adapter.getCopyOfContextMap()).isNull();
+
+    adapter.put("a", "1");
+    adapter.put("b", "2");
+    assertThat(adapter.get("a")).isEqualTo("1");
+    assertThat(adapter.snapshot().toString()).isEqualTo("{a=1, b=2}");
+
+    adapter.remove("a");
+    assertThat(adapter.get("a")).isNull();
+    assertThat(adapter.snapshot().toString()).isEqualTo("{b=2}");
+
+    adapter.remove("b");
+    assertThat(adapter.getKeys()).isNull();
+    assertThat(adapter.snapshot().isEmpty()).isTrue();
+  }
+
+  @Test
+  void snapshot_notChangedByLaterPuts() {
+    adapter.put("a", "1");
+    Map<String, String> snapshot = adapter.snapshot();
+
+    adapter.put("b", "2");
+    adapter.remove("a");
+
+    assertThat(snapshot).isEqualTo(Map.of("a", "1"));
+    assertThat(adapter.snapshot()).isEqualTo(Map.of("b", "2"));
+    adapter.clear();
+    assertThat(snapshot).isEqualTo(Map.of("a", "1"));
+  }
+
+  @Test
+  void snapshot_isSameUntilChanged() {
+    adapter.put("a", "1");
+    assertThat(adapter.snapshot()).isSameAs(adapter.snapshot());
+  }
+
+  @Test
+  void copyAndSetContextMap() {
+    adapter.put("a", "1");
+    Map<String, String> copy = adapter.getCopyOfContextMap();
+    copy.put("b", "2");
+    assertThat(adapter.get("b")).isNull();
+
+    adapter.setContextMap(copy);
+    assertThat(adapter.get("b")).isEqualTo("2");
+
+    adapter.setContextMap(new HashMap<>());
+    assertThat(adapter.getCopyOfContextMap()).isNull();
+  }
+
+  @Test
+  void inheritedByChildThread() throws InterruptedException {
+    adapter.put("request", "r1");
+    AtomicReference<Map<String, String>> childContext = new AtomicReference<>();
+    Thread child = new Thread(() -> {
+      childContext.set(adapter.snapshot());
+      adapter.put("child", "c");
+    });
+    child.start();
+    child.join();
+
+    assertThat(childContext.get()).isSameAs(adapter.snapshot());
+    assertThat(adapter.get("child")).isNull();
+    adapter.clear();
+  }
+
+  @Test
+  void deque() {
+    adapter.pushByKey("k", "1");
+    adapter.pushByKey("k", "2");
+    assertThat(adapter.popByKey("k")).isEqualTo("2");
+    assertThat(adapter.getCopyOfDequeByKey("k").size()).isEqualTo(1);
+    adapter.clearDequeByKey("k");
+    assertThat(adapter.getCopyOfDequeByKey("k").isEmpty()).isTrue();
+  }
+
+  @Test
+  void bindRestore() {
+    adapter.put("outer", "o");
+    Map<String, String> outer = adapter.snapshot();
+
+    Map<String, String> previous = adapter.bind(Map.of("inner", "i"));
+    assertThat(adapter.get("inner")).isEqualTo("i");
+    assertThat(adapter.get("outer")).isNull();
+
+    adapter.restore(previous);
+    assertThat(adapter.snapshot()).isSameAs(outer);
+    adapter.clear();
+
+    previous = adapter.bind(Map.of("inner", "i"));
+    adapter.restore(previous);
+    assertThat(adapter.getCopyOfContextMap()).isNull();
+  }
+
+  @Test
+  void bind_snapshot_boundWithoutCopy() {
+    adapter.put("k", "v");
+    Map<String, String> snapshot = adapter.snapshot();
+    adapter.clear();
+
+    Map<String, String> previous = adapter.bind(snapshot);
+    assertThat(adapter.snapshot()).isSameAs(snapshot);
+    assertThat(adapter.get("k")).isEqualTo("v");
+    adapter.restore(previous);
+    assertThat(adapter.getCopyOfContextMap()).isNull();
+  }
+}
@@ -0,0 +1,34 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StackTraceCacheTest {
+
+  private final StackTraceCache cache = new StackTraceCache(16);
+  private final StackTraceCache.Key key = new StackTraceCache.Key(42, 2, 0);
+
+  @Test
+  void get_equalFrames_expect_cached() {
+    StackTraceElement[] frames = frames("b");
+    cache.put(key, frames, new byte[]{'x'}, 1);
+
+    assertThat(cache.get(key, frames)).isNotNull();
+    assertThat(cache.get(key, frames("b"))).isNotNull();
+  }
+
+  @Test
+  void get_hashCollision_sameTopFrame_expect_null() {
+    cache.put(key, frames("b"), new byte[]{'x'}, 1);
+
+    assertThat(cache.get(key, frames("c"))).isNull();
+  }
+
+  private static StackTraceElement[] frames(String caller) {
+    return new StackTraceElement[]{
+      new StackTraceElement("org.Top", "top", "Top.java", 10),
+      new StackTraceElement("org.Caller", caller, "Caller.java", 20)
+    };
+  }
+}
@@ -0,0 +1,81 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLogWriterTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  @Test
+  void log_bufferedUntilFlush() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StripedLogWriter writer = new StripedLogWriter(encoder(), Channels.newChannel(output), 4, 1024, 60_000);
+    writer.log(NAME, Level.INFO, "one", null, null, null);
+    assertThat(output.size()).isEqualTo(0);
+
+    writer.close(5_000);
+    assertThat(output.toString(StandardCharsets.UTF_8)).endsWith("INFO test.Logger - one" + System.lineSeparator());
+  }
+
+  @Test
+  void log_largerThanStripe_writtenDirectly() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StripedLogWriter writer = new StripedLogWriter(encoder(), Channels.newChannel(output), 4, 16, 60_000);
+    writer.log(NAME, Level.INFO, "larger than the stripe", null, null, null);
+
+    assertThat(output.toString(StandardCharsets.UTF_8)).endsWith("INFO test.Logger - larger than the stripe" + System.lineSeparator());
+    writer.close(5_000);
+  }
+
+  @Test
+  void log_multipleThreads_allEventsWrittenInWholeLines() throws InterruptedException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StripedLogWriter writer = new StripedLogWriter(encoder(), Channels.newChannel(output), 4, 512, 1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final int threadNumber = i;
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 1000; j++) {
+          writer.log(NAME, Level.INFO, "thread {} event {}", new Object[]{threadNumber, j}, null, null);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    writer.close(5_000);
+
+    List<String> lines = output.toString(StandardCharsets.UTF_8).lines().collect(Collectors.toList());
+    assertThat(lines).hasSize(8000);
+    assertThat(lines).allMatch(line -> line.contains("INFO test.Logger - thread "));
+    // the events of each thread are in order
+    for (int i = 0; i < 8; i++) {
+      final String prefix = "thread " + i + " event ";
+      List<String> events = lines.stream()
+        .filter(line -> line.contains(prefix))
+        .map(line -> line.substring(line.indexOf(prefix) + prefix.length()))
+        .collect(Collectors.toList());
+      for (int j = 0; j < 1000; j++) {
+        assertThat(events.get(j)).isEqualTo(String.valueOf(j));
+      }
+    }
+  }
+
+  private static PlainEncoder encoder() {
+    return new PlainEncoder(DateTimeFormatter.ISO_OFFSET_DATE_TIME, false, new NoopTraceContext());
+  }
+}
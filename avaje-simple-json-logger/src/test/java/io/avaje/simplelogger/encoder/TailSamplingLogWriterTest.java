@@ -0,0 +1,111 @@
+package io.avaje.simplelogger.encoder;
+
+import io.avaje.simplelogger.encoder.FlightRecorderTest.FixedTraceContext;
+import io.avaje.simplelogger.encoder.FlightRecorderTest.RecordingWriter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TailSamplingLogWriterTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+
+  private final RecordingWriter delegate = new RecordingWriter();
+  private final FixedTraceContext traceContext = new FixedTraceContext();
+
+  @Test
+  void log_noTrace_writtenImmediately() {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 60_000, 10, 10);
+    writer.log(NAME, Level.INFO, "no trace", null, null, null);
+    assertThat(delegate.messages).containsExactly("no trace");
+  }
+
+  @Test
+  void log_sampledTrace_writtenImmediately() {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 60_000, 10, 10);
+    traceContext.traceId = "trace-1";
+    traceContext.sampled = true;
+    writer.log(NAME, Level.INFO, "sampled", null, null, null);
+    assertThat(delegate.messages).containsExactly("sampled");
+  }
+
+  @Test
+  void log_keptBySampleRate_writtenImmediately() {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 1, 60_000, 10, 10);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.INFO, "kept", null, null, null);
+    assertThat(delegate.messages).containsExactly("kept");
+  }
+
+  @Test
+  void log_error_writesHeldEventsOfTrace() {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 60_000, 10, 10);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.INFO, "one", null, null, null);
+    traceContext.traceId = "trace-2";
+    writer.log(NAME, Level.INFO, "other trace", null, null, null);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.WARN, "two", null, null, null);
+    assertThat(delegate.messages).isEmpty();
+
+    writer.log(NAME, Level.ERROR, "error", null, null, null);
+    assertThat(delegate.messages).containsExactly("one", "two", "error");
+    assertThat(delegate.keyValuePairs.get(0).get(0).key).isEqualTo(FlightRecorder.RECORDED_AT);
+
+    // the rest of the trace is written immediately
+    writer.log(NAME, Level.INFO, "after", null, null, null);
+    assertThat(delegate.messages).containsExactly("one", "two", "error", "after");
+  }
+
+  @Test
+  void log_windowExpired_heldEventsDropped() throws InterruptedException {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 1, 10, 10);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.INFO, "expired", null, null, null);
+    Thread.sleep(20);
+    writer.log(NAME, Level.ERROR, "error", null, null, null);
+    assertThat(delegate.messages).containsExactly("error");
+  }
+
+  @Test
+  void droppedCounts_includesHeldEventsOfExpiredTraces() throws InterruptedException {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 1, 10, 10);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.INFO, "one", null, null, null);
+    writer.log(NAME, Level.DEBUG, "two", null, null, null);
+    writer.log(NAME, Level.INFO, "three", null, null, null);
+    Thread.sleep(20);
+
+    assertThat(writer.droppedCounts()).containsEntry("info", 2L).containsEntry("debug", 1L).containsEntry("error", 0L);
+    assertThat(delegate.messages).isEmpty();
+    // counted once
+    assertThat(writer.droppedCounts()).containsEntry("info", 2L);
+  }
+
+  @Test
+  void droppedCounts_emittedTraceNotCounted() throws InterruptedException {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0, 1, 10, 10);
+    traceContext.traceId = "trace-1";
+    writer.log(NAME, Level.INFO, "one", null, null, null);
+    writer.log(NAME, Level.ERROR, "error", null, null, null);
+    Thread.sleep(20);
+
+    assertThat(writer.droppedCounts()).containsEntry("info", 0L);
+    assertThat(delegate.messages).containsExactly("one", "error");
+  }
+
+  @Test
+  void kept_sameForAllEventsOfTrace() {
+    TailSamplingLogWriter writer = new TailSamplingLogWriter(delegate, traceContext, 0.5, 60_000, 10, 10);
+    int kept = 0;
+    for (int i = 0; i < 1000; i++) {
+      final String traceId = String.format("%032x", i * 7919L);
+      assertThat(writer.kept(traceId)).isEqualTo(writer.kept(traceId));
+      if (writer.kept(traceId)) {
+        kept++;
+      }
+    }
+    assertThat(kept).isGreaterThan(400).isLessThan(600);
+  }
+}
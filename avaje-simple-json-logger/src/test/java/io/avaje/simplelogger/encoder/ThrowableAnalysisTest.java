@@ -0,0 +1,62 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThrowableAnalysisTest {
+
+  private final StackHasher stackHasher = new StackHasher(StackElementFilter.builder().allFilters().build());
+
+  @Test
+  void hexHash_sameAsStackHasher() {
+    Throwable error = new IllegalStateException("outer", new IllegalArgumentException("cause"));
+
+    String expected = stackHasher.toHex(stackHasher.hash(error, null));
+    assertThat(new ThrowableAnalysis(stackHasher).hexHash(error)).isEqualTo(expected);
+    assertThat(stackHasher.hexHash(error)).isEqualTo(expected);
+  }
+
+  @Test
+  void hexHash_causeCycle() {
+    IllegalStateException error = new IllegalStateException("outer");
+    IllegalArgumentException cause = new IllegalArgumentException("cause");
+    error.initCause(cause);
+    cause.initCause(error);
+
+    assertThat(new ThrowableAnalysis(stackHasher).hexHash(error)).isNotEmpty();
+  }
+
+  @Test
+  void hexHashAndWriteJson_stackTraceObtainedOncePerThrowable() {
+    CountingException cause = new CountingException("cause", null);
+    CountingException error = new CountingException("outer", cause);
+    CountingException suppressed = new CountingException("suppressed", null);
+    error.addSuppressed(suppressed);
+
+    ThrowableAnalysis analysis = new ThrowableAnalysis(stackHasher);
+    analysis.hexHash(error);
+    new ThrowableConverter(false, 10).writeJson(new EncodeBuffer(), error, analysis);
+
+    assertThat(error.stackTraceCalls.get()).isEqualTo(1);
+    assertThat(cause.stackTraceCalls.get()).isEqualTo(1);
+    assertThat(suppressed.stackTraceCalls.get()).isEqualTo(1);
+  }
+
+  static final class CountingException extends RuntimeException {
+
+    final AtomicInteger stackTraceCalls = new AtomicInteger();
+
+    CountingException(String message, Throwable cause) {
+      super(message, cause);
+    }
+
+    @Override
+    public StackTraceElement[] getStackTrace() {
+      stackTraceCalls.incrementAndGet();
+      return super.getStackTrace();
+    }
+  }
+}
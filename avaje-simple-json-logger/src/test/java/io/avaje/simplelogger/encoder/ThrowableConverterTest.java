@@ -0,0 +1,129 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThrowableConverterTest {
+
+  @AfterEach
+  void cleanup() {
+    System.clearProperty("avaje.logback.maxThrowableLength");
+  }
+
+  @Test
+  void writeJson_sameAsEscapedConvert() {
+    ThrowableConverter converter = new ThrowableConverter();
+    Throwable error = error();
+
+    assertThat(writeJson(converter, error)).isEqualTo(jsonString(converter.convert(error)));
+  }
+
+  @Test
+  void writeJson_truncated_sameAsEscapedConvert() {
+    System.setProperty("avaje.logback.maxThrowableLength", "300");
+    ThrowableConverter converter = new ThrowableConverter();
+    Throwable error = error();
+
+    final String text = converter.convert(error);
+    assertThat(text).hasSize(300);
+    assertThat(text).endsWith("...\n");
+    assertThat(writeJson(converter, error)).isEqualTo(jsonString(text));
+  }
+
+  @Test
+  void writeJson_structured() {
+    ThrowableConverter converter = new ThrowableConverter(true, 0);
+    String json = writeJson(converter, error());
+
+    assertThat(json).startsWith("[{\"type\":\"java.lang.IllegalStateException\",\"message\":\"outer \\\"quoted\\\"\\nsecond line\",\"frames\":[{\"class\":\"io.avaje.simplelogger.encoder.ThrowableConverterTest\",\"method\":\"error\",\"file\":\"ThrowableConverterTest.java\",\"line\":");
+    assertThat(json).contains("{\"type\":\"java.lang.RuntimeException\",\"message\":\"suppressed\",\"suppressed\":true,\"frames\":[{");
+    assertThat(json).contains("{\"type\":\"java.io.IOException\",\"message\":\"caf\u00e9\",\"frames\":[{");
+    assertThat(json).endsWith("}]");
+  }
+
+  @Test
+  void writeJson_structured_maxLength() {
+    System.setProperty("avaje.logback.maxThrowableLength", "10");
+    ThrowableConverter converter = new ThrowableConverter(true, 0);
+    String json = writeJson(converter, error());
+
+    assertThat(json).startsWith("[{\"type\":\"java.lang.IllegalStateException\"");
+    assertThat(json).contains("],\"omitted\":");
+    assertThat(json).doesNotContain("java.io.IOException");
+  }
+
+  @Test
+  void writeJson_structured_causeAndSuppressedCycle() {
+    IllegalStateException error = new IllegalStateException("outer");
+    IllegalArgumentException cause = new IllegalArgumentException("cause");
+    error.initCause(cause);
+    cause.initCause(error);
+    cause.addSuppressed(error);
+
+    String json = writeJson(new ThrowableConverter(true, 0), error);
+
+    assertThat(json).startsWith("[{\"type\":\"java.lang.IllegalStateException\"");
+    assertThat(json).contains("{\"type\":\"java.lang.IllegalArgumentException\",\"message\":\"cause\"");
+    assertThat(json.split("\"type\":", -1)).hasSize(3);
+    assertThat(json).endsWith("}]");
+  }
+
+  @Test
+  void writeJson_cached_sameAsUncached() {
+    ThrowableConverter converter = new ThrowableConverter();
+    ThrowableConverter cached = new ThrowableConverter(false, 10);
+    for (int i = 0; i < 3; i++) {
+      // the same stack with a different message
+      Throwable error = error("message " + i);
+      assertThat(writeJson(cached, error)).isEqualTo(writeJson(converter, error));
+    }
+  }
+
+  @Test
+  void writeJson_cachedTruncated_sameAsUncached() {
+    System.setProperty("avaje.logback.maxThrowableLength", "300");
+    ThrowableConverter converter = new ThrowableConverter();
+    ThrowableConverter cached = new ThrowableConverter(false, 10);
+    for (int i = 0; i < 3; i++) {
+      Throwable error = error("message " + i);
+      assertThat(writeJson(cached, error)).isEqualTo(writeJson(converter, error));
+    }
+  }
+
+  @Test
+  void writeJson_structuredCached_sameAsUncached() {
+    ThrowableConverter converter = new ThrowableConverter(true, 0);
+    ThrowableConverter cached = new ThrowableConverter(true, 10);
+    for (int i = 0; i < 3; i++) {
+      Throwable error = error("message " + i);
+      assertThat(writeJson(cached, error)).isEqualTo(writeJson(converter, error));
+    }
+  }
+
+  private static Throwable error() {
+    return error("outer \"quoted\"\nsecond line");
+  }
+
+  private static Throwable error(String message) {
+    IllegalStateException error = new IllegalStateException(message, new IOException("caf\u00e9"));
+    error.addSuppressed(new RuntimeException("suppressed"));
+    return error;
+  }
+
+  private static String writeJson(ThrowableConverter converter, Throwable error) {
+    EncodeBuffer out = new EncodeBuffer();
+    converter.writeJson(out, error);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static String jsonString(String value) {
+    EncodeBuffer out = new EncodeBuffer();
+    out.appendJsonString(value);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,55 @@
+package io.avaje.simplelogger.encoder;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimestampCacheTest {
+
+  private static final ZoneId ZONE = ZoneId.of("Australia/Adelaide");
+
+  @Test
+  void timePatterns() {
+    for (TimePattern pattern : TimePattern.values()) {
+      assertSameAsFormatter(TimeZoneUtils.jsonFormatter(pattern.name(), ZONE));
+    }
+    assertSameAsFormatter(TimeZoneUtils.jsonFormatter(null, ZONE));
+  }
+
+  @Test
+  void customPatterns() {
+    assertSameAsFormatter(TimeZoneUtils.plainFormatter(null, ZONE));
+    assertSameAsFormatter(TimeZoneUtils.plainFormatter("HH:mm:ss", ZONE));
+    assertSameAsFormatter(TimeZoneUtils.plainFormatter("HH:mm:ss.SSSSSS", ZONE));
+    assertSameAsFormatter(TimeZoneUtils.plainFormatter("d MMMM uuuu HH:mm:ss,SSS XXX", ZONE));
+    assertSameAsFormatter(TimeZoneUtils.plainFormatter("A", ZONE));
+  }
+
+  private static void assertSameAsFormatter(DateTimeFormatter formatter) {
+    TimestampCache cache = new TimestampCache(formatter, ZONE);
+    // includes millis 0, trailing zeros, second, minute and daylight saving boundaries
+    long[] starts = {1_700_000_000_000L, 1_700_000_059_990L, 1_712_420_999_990L};
+    for (long start : starts) {
+      for (long millis = start; millis < start + 1_020; millis += 7) {
+        assertFormat(formatter, cache, millis);
+        assertFormat(formatter, cache, millis - (millis % 10));
+        assertFormat(formatter, cache, millis - (millis % 100));
+      }
+    }
+  }
+
+  private static void assertFormat(DateTimeFormatter formatter, TimestampCache cache, long epochMillis) {
+    String expected = formatter.format(OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE));
+    assertThat(cache.format(epochMillis)).isEqualTo(expected);
+
+    EncodeBuffer buffer = new EncodeBuffer();
+    cache.appendJson(buffer, epochMillis);
+    assertThat(new String(buffer.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(expected);
+  }
+}
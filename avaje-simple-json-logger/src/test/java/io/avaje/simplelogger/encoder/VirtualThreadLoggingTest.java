@@ -0,0 +1,99 @@
+package io.avaje.simplelogger.encoder;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Many virtual threads logging concurrently via the logger.virtualThreads writer
+ * without pinning their carrier threads (Java 21+ only).
+ */
+class VirtualThreadLoggingTest {
+
+  private static final LoggerName NAME = new LoggerName("test.Logger");
+  private static final int THREADS = 10_000;
+  private static final int EVENTS = 10;
+
+  @Test
+  void log_thousandsOfVirtualThreads_noPinning() throws Exception {
+    ExecutorService executor = virtualThreadExecutor();
+    assumeTrue(executor != null, "requires Java 21+");
+    Optional<Module> jfr = ModuleLayer.boot().findModule("jdk.jfr");
+    assumeTrue(jfr.isPresent(), "requires jdk.jfr");
+    // the test classes may be patched into the named module which does not read jdk.jfr
+    VirtualThreadLoggingTest.class.getModule().addReads(jfr.get());
+
+    Path dir = Files.createTempDirectory("virtual");
+    Path file = dir.resolve("app.log");
+    Properties properties = new Properties();
+    properties.setProperty("logger.virtualThreads", "true");
+    properties.setProperty("logger.file", file.toString());
+    properties.setProperty("logger.showThreadName", "false");
+    LogWriter writer = Bootstrap.createWriter(properties, "plain");
+    assertThat(writer).isInstanceOf(AsyncLogWriter.class);
+
+    List<String> pinned;
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      for (int i = 0; i < THREADS; i++) {
+        final int task = i;
+        executor.execute(() -> {
+          for (int j = 0; j < EVENTS; j++) {
+            writer.log(NAME, Level.INFO, "task {} event {}", new Object[]{task, j}, null, null);
+          }
+        });
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+      recording.stop();
+      Path dump = dir.resolve("pinned.jfr");
+      recording.dump(dump);
+      pinned = RecordingFile.readAllEvents(dump).stream()
+        .map(VirtualThreadLoggingTest::describe)
+        .collect(Collectors.toList());
+    }
+    writer.close(5_000);
+
+    assertThat(pinned).isEmpty();
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    assertThat(lines).hasSize(THREADS * EVENTS);
+    assertThat(lines).allMatch(line -> line.contains("INFO test.Logger - task "));
+  }
+
+  private static String describe(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return event.getEventType().getName();
+    }
+    return event.getStackTrace().getFrames().stream()
+      .map(RecordedFrame::getMethod)
+      .map(method -> method.getType().getName() + "." + method.getName())
+      .collect(Collectors.joining(" < "));
+  }
+
+  private static ExecutorService virtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+}